@@ -4,11 +4,24 @@ import java.util.Date;
 
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.Table;
+
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.SourceType;
 
 import lombok.*;
 import lombok.experimental.FieldDefaults;
 
 @Entity
+@Table(
+        name = "invalidated_token",
+        indexes = {
+            @Index(name = "idx_invalidated_token_exp_time", columnList = "exp_time, id"),
+            @Index(name = "idx_invalidated_token_exp_bucket", columnList = "exp_bucket"),
+            @Index(name = "idx_invalidated_token_revoked_at", columnList = "revoked_at")
+        })
 @Getter
 @Setter
 @Builder
@@ -16,8 +29,26 @@ import lombok.experimental.FieldDefaults;
 @AllArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE)
 public class InvalidatedToken {
+    public static final long BUCKET_MILLIS = 3_600_000;
+
     @Id
     String id;
 
     Date expTime;
+
+    /** Hours since the epoch at {@code expTime}; the partition key when the table is partitioned. */
+    Integer expBucket;
+
+    /** Insert time by the database clock, so every instance can pick up rows written since its last refresh. */
+    @CreationTimestamp(source = SourceType.DB)
+    Date revokedAt;
+
+    public static int bucketOf(Date expTime) {
+        return (int) (expTime.getTime() / BUCKET_MILLIS);
+    }
+
+    @PrePersist
+    void fillBucket() {
+        if (expBucket == null && expTime != null) expBucket = bucketOf(expTime);
+    }
 }
@@ -1,8 +1,14 @@
 package com.boot1.Entities;
 
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import com.boot1.configuration.HibernateCacheConfig;
+
 import lombok.*;
 import lombok.experimental.FieldDefaults;
 
@@ -12,6 +18,8 @@ import lombok.experimental.FieldDefaults;
 @AllArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE)
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = HibernateCacheConfig.PERMISSION_REGION)
 public class Permission {
     @Id
     String name;
@@ -0,0 +1,26 @@
+package com.boot1.Entities;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Lob;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+/** Permission names of one dictionary version, in bit order, so tokens minted anywhere decode everywhere. */
+@Entity
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class PermissionDictionaryVersion {
+    /** CRC32 of {@code names}. */
+    @Id
+    Integer version;
+
+    /** One name per line. */
+    @Lob
+    String names;
+}
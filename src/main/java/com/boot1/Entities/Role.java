@@ -4,6 +4,11 @@ import java.util.Set;
 
 import jakarta.persistence.*;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import com.boot1.configuration.HibernateCacheConfig;
+
 import lombok.*;
 import lombok.experimental.FieldDefaults;
 
@@ -13,6 +18,8 @@ import lombok.experimental.FieldDefaults;
 @Builder
 @FieldDefaults(level = AccessLevel.PRIVATE)
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = HibernateCacheConfig.ROLE_REGION)
 public class Role {
     @Id
     String name;
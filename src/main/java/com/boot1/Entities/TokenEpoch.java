@@ -0,0 +1,24 @@
+package com.boot1.Entities;
+
+import java.util.Date;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+/** Tokens of {@code username} issued before {@code notBefore} are rejected. */
+@Entity
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class TokenEpoch {
+    @Id
+    String username;
+
+    Date notBefore;
+}
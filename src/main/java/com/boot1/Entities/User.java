@@ -5,6 +5,8 @@ import java.util.Set;
 
 import jakarta.persistence.*;
 
+import org.hibernate.annotations.BatchSize;
+
 import lombok.*;
 import lombok.experimental.FieldDefaults;
 
@@ -27,7 +29,9 @@ public class User {
     LocalDate dob;
     String email;
 
-    @ManyToMany(fetch = FetchType.EAGER)
+    // read through the finders that fetch it; pages load it for all their users at once
+    @ManyToMany
+    @BatchSize(size = 100)
     @JoinTable(
             name = "user_roles",
             joinColumns = @JoinColumn(name = "user_id", referencedColumnName = "id"),
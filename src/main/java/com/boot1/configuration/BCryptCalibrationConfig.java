@@ -0,0 +1,33 @@
+package com.boot1.configuration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.boot1.service.BCryptCalibrator;
+
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@Configuration
+@ConditionalOnProperty(prefix = "app.password", name = "calibrate", havingValue = "true")
+public class BCryptCalibrationConfig {
+    @Bean
+    ApplicationRunner bcryptCalibrationRunner(
+            @Value("${app.password.calibration.target-ms:250}") long targetMillis,
+            @Value("${app.password.calibration.samples:5}") int samples,
+            @Value("${app.password.bcrypt-strength:10}") int strength) {
+        return args -> {
+            var report = new BCryptCalibrator(samples).calibrate(targetMillis, strength);
+            log.warn("\n{}", report.format());
+            if (report.recommendedCost() != strength) {
+                log.warn(
+                        "Configured BCrypt strength {} differs from recommended {}",
+                        strength,
+                        report.recommendedCost());
+            }
+        };
+    }
+}
@@ -0,0 +1,93 @@
+package com.boot1.configuration;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.stereotype.Component;
+
+import com.boot1.service.PermissionDictionary;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Maps the scope and permission claims to authorities. Most tokens carry one of a few role/permission
+ * combinations, so the immutable result is cached by the raw claim values, and every authority is a shared
+ * instance; a cache hit allocates only the lookup key. A permission bitset whose dictionary version cannot be
+ * read yet is answered without those permissions and not cached, so it resolves once the version is known.
+ */
+@Component
+public class CachingJwtAuthoritiesConverter implements Converter<Jwt, Collection<GrantedAuthority>> {
+    private final PermissionDictionary permissionDictionary;
+    private final Cache<Key, Collection<GrantedAuthority>> cache;
+    private final Map<String, GrantedAuthority> interned = new ConcurrentHashMap<>();
+
+    public CachingJwtAuthoritiesConverter(
+            PermissionDictionary permissionDictionary,
+            MeterRegistry meterRegistry,
+            @Value("${app.security.authority-cache.maximum-size:1024}") long maximumSize) {
+        this.permissionDictionary = permissionDictionary;
+        this.cache = Caffeine.newBuilder().maximumSize(maximumSize).recordStats().build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "auth.authorities");
+    }
+
+    @Override
+    public Collection<GrantedAuthority> convert(Jwt jwt) {
+        Map<String, Object> claims = jwt.getClaims();
+        Key key = new Key(
+                claims.get("scope"),
+                claims.get("permission"),
+                claims.get(PermissionDictionary.VERSION_CLAIM),
+                claims.get(PermissionDictionary.BITS_CLAIM));
+        Collection<GrantedAuthority> cached = cache.getIfPresent(key);
+        if (cached != null) return cached;
+        List<GrantedAuthority> auths = new ArrayList<>();
+        boolean resolved = build(jwt, auths);
+        Collection<GrantedAuthority> authorities = List.copyOf(auths);
+        if (!resolved) return authorities;
+        // two requests may build the same set at once; keep whichever lands first so instances stay shared
+        Collection<GrantedAuthority> raced = cache.asMap().putIfAbsent(key, authorities);
+        return raced != null ? raced : authorities;
+    }
+
+    /** @return {@code false} if the permissions are in a dictionary version this instance cannot read */
+    private boolean build(Jwt jwt, List<GrantedAuthority> auths) {
+        List<String> scope = jwt.getClaimAsStringList("scope");
+        if (scope != null) {
+            scope.forEach(role -> auths.add(intern("ROLE_" + role)));
+        }
+        if (jwt.hasClaim(PermissionDictionary.BITS_CLAIM)) {
+            Number version = jwt.getClaim(PermissionDictionary.VERSION_CLAIM);
+            Optional<Set<GrantedAuthority>> permissions = permissionDictionary.decode(
+                    version.intValue(), jwt.getClaimAsString(PermissionDictionary.BITS_CLAIM));
+            permissions.ifPresent(
+                    authorities -> authorities.forEach(authority -> auths.add(intern(authority.getAuthority()))));
+            return permissions.isPresent();
+        } else {
+            List<String> permissions = jwt.getClaimAsStringList("permission");
+            if (permissions != null) {
+                permissions.forEach(permission -> auths.add(intern(permission)));
+            }
+        }
+        return true;
+    }
+
+    // names come from signed tokens, so this grows with the role and permission tables, not with traffic
+    private GrantedAuthority intern(String name) {
+        return interned.computeIfAbsent(name, SimpleGrantedAuthority::new);
+    }
+
+    private record Key(Object scope, Object permission, Object version, Object bits) {}
+}
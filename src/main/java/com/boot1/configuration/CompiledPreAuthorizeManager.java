@@ -0,0 +1,100 @@
+package com.boot1.configuration;
+
+import java.lang.reflect.Method;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.core.MethodClassKey;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.security.access.hierarchicalroles.RoleHierarchy;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.authorization.AuthorityAuthorizationManager;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.authorization.AuthorizationResult;
+import org.springframework.security.authorization.method.PreAuthorizeAuthorizationManager;
+import org.springframework.security.core.Authentication;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * {@code @PreAuthorize} without SpEL for the common shapes. Expressions made only of {@code hasRole},
+ * {@code hasAnyRole}, {@code hasAuthority} and {@code hasAnyAuthority} joined by {@code or} are turned into
+ * one {@link AuthorityAuthorizationManager} over the union of their authorities, once per method. Anything
+ * else, such as {@code #id == authentication.name}, goes to the regular
+ * {@link PreAuthorizeAuthorizationManager}.
+ */
+@Slf4j
+public class CompiledPreAuthorizeManager implements AuthorizationManager<MethodInvocation> {
+    private static final Pattern OR = Pattern.compile("\\s+or\\s+");
+    private static final Pattern TERM = Pattern.compile(
+            "(hasRole|hasAnyRole|hasAuthority|hasAnyAuthority)\\(\\s*('[^']*'(\\s*,\\s*'[^']*')*)\\s*\\)");
+    private static final Pattern QUOTED = Pattern.compile("'([^']*)'");
+    private static final String ROLE_PREFIX = "ROLE_";
+
+    private final PreAuthorizeAuthorizationManager fallback;
+    private final RoleHierarchy roleHierarchy;
+    private final Map<MethodClassKey, AuthorizationManager<MethodInvocation>> compiled = new ConcurrentHashMap<>();
+
+    public CompiledPreAuthorizeManager(PreAuthorizeAuthorizationManager fallback, RoleHierarchy roleHierarchy) {
+        this.fallback = fallback;
+        this.roleHierarchy = roleHierarchy;
+    }
+
+    @Override
+    public AuthorizationResult authorize(Supplier<Authentication> authentication, MethodInvocation invocation) {
+        Class<?> targetClass = invocation.getThis() == null ? null : AopUtils.getTargetClass(invocation.getThis());
+        MethodClassKey key = new MethodClassKey(invocation.getMethod(), targetClass);
+        return compiled.computeIfAbsent(key, k -> compile(invocation.getMethod(), targetClass))
+                .authorize(authentication, invocation);
+    }
+
+    /** Still abstract in {@link AuthorizationManager}; Spring Security itself calls {@link #authorize}. */
+    @Deprecated
+    @Override
+    public AuthorizationDecision check(Supplier<Authentication> authentication, MethodInvocation invocation) {
+        AuthorizationResult result = authorize(authentication, invocation);
+        return result == null ? null : new AuthorizationDecision(result.isGranted());
+    }
+
+    private AuthorizationManager<MethodInvocation> compile(Method method, Class<?> targetClass) {
+        Method specific =
+                AopUtils.getMostSpecificMethod(method, targetClass == null ? method.getDeclaringClass() : targetClass);
+        PreAuthorize annotation = AnnotatedElementUtils.findMergedAnnotation(specific, PreAuthorize.class);
+        if (annotation == null) {
+            annotation = AnnotatedElementUtils.findMergedAnnotation(specific.getDeclaringClass(), PreAuthorize.class);
+        }
+        Set<String> authorities = annotation == null ? null : authoritiesOf(annotation.value());
+        if (authorities == null) {
+            log.debug("@PreAuthorize on {} is evaluated with SpEL", specific);
+            return fallback;
+        }
+        AuthorityAuthorizationManager<MethodInvocation> manager =
+                AuthorityAuthorizationManager.hasAnyAuthority(authorities.toArray(String[]::new));
+        if (roleHierarchy != null) manager.setRoleHierarchy(roleHierarchy);
+        return manager;
+    }
+
+    /** Authorities any one of which satisfies {@code expression}, or {@code null} if it needs SpEL. */
+    static Set<String> authoritiesOf(String expression) {
+        Set<String> authorities = new LinkedHashSet<>();
+        for (String term : OR.split(expression.trim())) {
+            Matcher matcher = TERM.matcher(term);
+            if (!matcher.matches()) return null;
+            boolean role = matcher.group(1).endsWith("Role");
+            Matcher quoted = QUOTED.matcher(matcher.group(2));
+            while (quoted.find()) {
+                String name = quoted.group(1);
+                authorities.add(role && !name.startsWith(ROLE_PREFIX) ? ROLE_PREFIX + name : name);
+            }
+        }
+        return authorities;
+    }
+}
@@ -1,48 +1,95 @@
 package com.boot1.configuration;
 
 import java.text.ParseException;
-import java.util.Objects;
-import javax.crypto.spec.SecretKeySpec;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
 
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.oauth2.jose.jws.MacAlgorithm;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.oauth2.jwt.BadJwtException;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
 import org.springframework.security.oauth2.jwt.JwtException;
-import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.security.oauth2.jwt.MappedJwtClaimSetConverter;
 import org.springframework.stereotype.Component;
 
-import com.boot1.dto.request.IntrospectRequest;
+import com.boot1.exception.ApiException;
 import com.boot1.service.AuthenticationService;
+import com.boot1.service.BearerTokenPrefilter;
+import com.boot1.service.TokenDigest;
+import com.boot1.service.TokenEpochService;
+import com.boot1.service.TokenRevocationService;
+import com.boot1.service.VerifiedTokenCache;
 import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jwt.SignedJWT;
 
+/**
+ * Parses the bearer token once, lets {@link AuthenticationService} verify its signature, expiry and
+ * revocation, then builds the Spring {@link Jwt} from the claims that were already parsed. Decoded tokens
+ * are kept in {@link VerifiedTokenCache} until they expire or are revoked; since a revocation or epoch bump on
+ * another instance does not evict them here, a cache hit is checked against both again. Malformed and
+ * recently rejected tokens are refused by {@link BearerTokenPrefilter} first, without parsing them.
+ */
 @Component
 public class CustomJwtDecoder implements JwtDecoder {
-    @Value("${jwt.signerKey}")
-    private String signerKey;
+    // shared so that garbage traffic does not pay for a stack trace per request
+    private static final BadJwtException MALFORMED = new BadJwtException("malformed token");
+    private static final BadJwtException REJECTED = new BadJwtException("invalid token");
 
-    @Autowired
-    private AuthenticationService authenticationService;
+    private final AuthenticationService authenticationService;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final BearerTokenPrefilter bearerTokenPrefilter;
+    private final TokenRevocationService tokenRevocationService;
+    private final TokenEpochService tokenEpochService;
 
-    private NimbusJwtDecoder nimbusJwtDecoder = null;
+    private final Converter<Map<String, Object>, Map<String, Object>> claimSetConverter =
+            MappedJwtClaimSetConverter.withDefaults(Collections.emptyMap());
+
+    public CustomJwtDecoder(
+            AuthenticationService authenticationService,
+            VerifiedTokenCache verifiedTokenCache,
+            BearerTokenPrefilter bearerTokenPrefilter,
+            TokenRevocationService tokenRevocationService,
+            TokenEpochService tokenEpochService) {
+        this.authenticationService = authenticationService;
+        this.verifiedTokenCache = verifiedTokenCache;
+        this.bearerTokenPrefilter = bearerTokenPrefilter;
+        this.tokenRevocationService = tokenRevocationService;
+        this.tokenEpochService = tokenEpochService;
+    }
 
     @Override
     public Jwt decode(String token) throws JwtException {
-        try {
-            var verify = authenticationService.introspect(
-                    IntrospectRequest.builder().token(token).build());
-            if (!verify.isValid()) throw new JwtException("invalid token");
-        } catch (JOSEException | ParseException e) {
-            throw new JwtException(e.getMessage());
+        if (!bearerTokenPrefilter.isWellFormed(token)) throw MALFORMED;
+        TokenDigest digest = TokenDigest.of(token);
+        Jwt cached = verifiedTokenCache.get(digest);
+        if (cached != null) {
+            // answered from the queue, the revocation filter and the epoch cache, so a hit rarely reaches the database
+            if (!tokenRevocationService.isRevoked(cached.getId())
+                    && !tokenEpochService.isStale(cached.getSubject(), Date.from(cached.getIssuedAt()))) {
+                return cached;
+            }
+            verifiedTokenCache.invalidate(digest);
+            bearerTokenPrefilter.markBad(digest);
+            throw REJECTED;
         }
-        if (Objects.isNull(nimbusJwtDecoder)) {
-            SecretKeySpec secretKeySpec = new SecretKeySpec(signerKey.getBytes(), "HS512");
-            nimbusJwtDecoder = NimbusJwtDecoder.withSecretKey(secretKeySpec)
-                    .macAlgorithm(MacAlgorithm.HS512)
+        if (bearerTokenPrefilter.isKnownBad(digest)) throw REJECTED;
+        long stamp = verifiedTokenCache.stamp();
+        try {
+            SignedJWT signedJWT = authenticationService.verifyAccessToken(token);
+            Map<String, Object> claims =
+                    claimSetConverter.convert(signedJWT.getJWTClaimsSet().getClaims());
+            Jwt jwt = Jwt.withTokenValue(token)
+                    .headers(headers -> headers.putAll(signedJWT.getHeader().toJSONObject()))
+                    .claims(c -> c.putAll(claims))
                     .build();
+            verifiedTokenCache.put(digest, jwt, stamp);
+            return jwt;
+        } catch (ApiException | ParseException e) {
+            bearerTokenPrefilter.markBad(digest);
+            throw new BadJwtException("invalid token", e);
+        } catch (JOSEException e) {
+            throw new BadJwtException("invalid token", e);
         }
-        System.out.println(nimbusJwtDecoder);
-        return nimbusJwtDecoder.decode(token);
     }
 }
@@ -0,0 +1,87 @@
+package com.boot1.configuration;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.jcache.internal.JCacheRegionFactory;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+
+/**
+ * Hibernate second-level and query cache for roles and permissions, kept in process by Caffeine through
+ * JCache. Writes made through Hibernate update or invalidate the entries of this instance only; the TTL
+ * bounds how long a change made on another instance, or with plain SQL, can go unseen. That is acceptable for
+ * names and descriptions, but not for the grants between them, which {@code RoleService} diffs before writing,
+ * so {@code Role.permissions} is always read from the table. With statistics on, hit and miss counts per
+ * region are published as {@code hibernate.second.level.cache.*} and {@code hibernate.cache.query.*} meters.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "app.hibernate-cache", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class HibernateCacheConfig {
+    public static final String ROLE_REGION = "role";
+    public static final String PERMISSION_REGION = "permission";
+
+    @Bean(destroyMethod = "close")
+    CacheManager hibernateCacheManager(
+            @Value("${app.hibernate-cache.maximum-size:10000}") long maximumSize,
+            @Value("${app.hibernate-cache.ttl-seconds:600}") long ttlSeconds) {
+        // one manager per application context, the default one is shared by the whole JVM
+        CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        CacheManager cacheManager = provider.getCacheManager(
+                URI.create("boot1:hibernate:" + UUID.randomUUID()), getClass().getClassLoader());
+        long ttlNanos = Duration.ofSeconds(ttlSeconds).toNanos();
+        for (String region : List.of(
+                ROLE_REGION,
+                PERMISSION_REGION,
+                RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME)) {
+            create(cacheManager, region, maximumSize, OptionalLong.of(ttlNanos));
+        }
+        // query results are only trusted while the timestamps of their tables are still here
+        create(
+                cacheManager,
+                RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME,
+                maximumSize,
+                OptionalLong.empty());
+        return cacheManager;
+    }
+
+    @Bean
+    HibernatePropertiesCustomizer hibernateCacheCustomizer(
+            CacheManager hibernateCacheManager,
+            @Value("${app.hibernate-cache.statistics:true}") boolean statistics) {
+        return properties -> {
+            properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+            properties.put(AvailableSettings.USE_QUERY_CACHE, true);
+            properties.put(AvailableSettings.CACHE_REGION_FACTORY, JCacheRegionFactory.class.getName());
+            properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+            // a region missing above gets an unbounded cache, so say so
+            properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "create-warn");
+            properties.put(AvailableSettings.GENERATE_STATISTICS, statistics);
+        };
+    }
+
+    private static void create(CacheManager cacheManager, String region, long maximumSize, OptionalLong ttlNanos) {
+        cacheManager.createCache(
+                region,
+                new CaffeineConfiguration<>()
+                        .setMaximumSize(OptionalLong.of(maximumSize))
+                        .setExpireAfterWrite(ttlNanos)
+                        .setStoreByValue(false));
+    }
+}
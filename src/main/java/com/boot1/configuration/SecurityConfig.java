@@ -1,43 +1,60 @@
 package com.boot1.configuration;
 
-import java.util.ArrayList;
-import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 
+import org.springframework.aop.Advisor;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Role;
 import org.springframework.http.HttpMethod;
+import org.springframework.security.access.hierarchicalroles.RoleHierarchy;
+import org.springframework.security.authorization.method.AuthorizationManagerAfterMethodInterceptor;
+import org.springframework.security.authorization.method.AuthorizationManagerBeforeMethodInterceptor;
+import org.springframework.security.authorization.method.PostFilterAuthorizationMethodInterceptor;
+import org.springframework.security.authorization.method.PreAuthorizeAuthorizationManager;
+import org.springframework.security.authorization.method.PreFilterAuthorizationMethodInterceptor;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
-import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.util.ClassUtils;
 
 @Configuration
 @EnableWebSecurity
-@EnableMethodSecurity
+@EnableMethodSecurity(prePostEnabled = false)
 public class SecurityConfig {
+    private static final String ARGON2_GENERATOR = "org.bouncycastle.crypto.generators.Argon2BytesGenerator";
+
     private final String[] PUBLIC_ENDPOINTS = {
-        "/users/create", "/auth/login", "/auth/introspect", "/auth/logout", "/auth/refresh" , "roles/create"
+        "/users/create", "/auth/login", "/auth/introspect", "/auth/introspect/batch", "/auth/authorize", "/auth/logout", "/auth/refresh" , "roles/create"
     };
 
-    @Value("${jwt.signerKey}")
-    private String signerKey;
-
     @Autowired
     private CustomJwtDecoder customJwtDecoder;
 
+    @Autowired
+    private CachingJwtAuthoritiesConverter cachingJwtAuthoritiesConverter;
+
     @Bean
     public SecurityFilterChain filterChainer(HttpSecurity httpSecurity) throws Exception {
         httpSecurity.authorizeHttpRequests(authorizeRequests -> authorizeRequests
                 .requestMatchers(HttpMethod.POST, PUBLIC_ENDPOINTS)
                 .permitAll()
+                .requestMatchers(HttpMethod.GET, "/auth/jwks")
+                .permitAll()
                 .anyRequest()
                 .authenticated());
         httpSecurity.oauth2ResourceServer(config -> config.jwt(jwtConfigurer -> jwtConfigurer
@@ -52,22 +69,56 @@ public class SecurityConfig {
     @Bean
     JwtAuthenticationConverter jwtAuthenticationConverter() {
         JwtAuthenticationConverter converter = new JwtAuthenticationConverter();
-        converter.setJwtGrantedAuthoritiesConverter(jwt -> {
-            Collection<GrantedAuthority> auths = new ArrayList<>();
-            jwt.getClaimAsStringList("scope").stream()
-                    .map(r -> "ROLE_" + r)
-                    .map(SimpleGrantedAuthority::new)
-                    .forEach(auths::add);
-            jwt.getClaimAsStringList("permission").stream()
-                    .map(SimpleGrantedAuthority::new)
-                    .forEach(auths::add);
-            return auths;
-        });
+        converter.setJwtGrantedAuthoritiesConverter(cachingJwtAuthoritiesConverter);
         return converter;
     }
 
+    // @PreAuthorize is checked by CompiledPreAuthorizeManager, the other pre/post annotations as usual
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    static Advisor preAuthorizeAdvisor(ObjectProvider<RoleHierarchy> roleHierarchy, ApplicationContext context) {
+        PreAuthorizeAuthorizationManager fallback = new PreAuthorizeAuthorizationManager();
+        fallback.setApplicationContext(context);
+        return AuthorizationManagerBeforeMethodInterceptor.preAuthorize(
+                new CompiledPreAuthorizeManager(fallback, roleHierarchy.getIfAvailable()));
+    }
+
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    static Advisor postAuthorizeAdvisor() {
+        return AuthorizationManagerAfterMethodInterceptor.postAuthorize();
+    }
+
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    static Advisor preFilterAdvisor() {
+        return new PreFilterAuthorizationMethodInterceptor();
+    }
+
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    static Advisor postFilterAdvisor() {
+        return new PostFilterAuthorizationMethodInterceptor();
+    }
+
+    // static: the JWT decoder injected here reaches this encoder through PasswordHashingService
     @Bean
-    PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder(10);
+    static PasswordEncoder passwordEncoder(
+            @Value("${app.password.bcrypt-strength:10}") int strength,
+            @Value("${app.password.encoding-id:bcrypt}") String encodingId) {
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(strength);
+        Map<String, PasswordEncoder> encoders = new HashMap<>();
+        encoders.put("bcrypt", bcrypt);
+        encoders.put("pbkdf2", Pbkdf2PasswordEncoder.defaultsForSpringSecurity_v5_8());
+        if (ClassUtils.isPresent(ARGON2_GENERATOR, SecurityConfig.class.getClassLoader())) {
+            encoders.put("argon2", Argon2PasswordEncoder.defaultsForSpringSecurity_v5_8());
+        }
+        if (!encoders.containsKey(encodingId)) {
+            throw new IllegalStateException("Unknown app.password.encoding-id : " + encodingId);
+        }
+        // hashes stored before ids were introduced carry no {id} prefix and are all BCrypt
+        DelegatingPasswordEncoder delegating = new DelegatingPasswordEncoder(encodingId, encoders);
+        delegating.setDefaultPasswordEncoderForMatches(bcrypt);
+        return delegating;
     }
 }
@@ -1,27 +1,45 @@
 package com.boot1.controller;
 
 import java.text.ParseException;
+import java.time.Duration;
+import java.util.List;
 
+import jakarta.servlet.http.HttpServletRequest;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.client.RestClient;
 
 import com.boot1.dto.request.AuthenticationRequest;
+import com.boot1.dto.request.AuthorizationRequest;
+import com.boot1.dto.request.BatchIntrospectRequest;
 import com.boot1.dto.request.IntrospectRequest;
 import com.boot1.dto.request.LogoutRequest;
 import com.boot1.dto.request.RefreshRequest;
 import com.boot1.dto.response.ApiResponse;
 import com.boot1.dto.response.AuthenticationResponse;
+import com.boot1.dto.response.AuthorizationDecision;
 import com.boot1.dto.response.IntrospectResponse;
 import com.boot1.dto.response.RefreshResponse;
 import com.boot1.service.AuthenticationService;
+import com.boot1.service.PolicyDecisionService;
+import com.boot1.service.TokenCryptoService;
 import com.nimbusds.jose.JOSEException;
 
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
 
 @RestController
 @RequestMapping("/auth")
@@ -29,11 +47,18 @@ import lombok.experimental.FieldDefaults;
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
 public class AuthenticationController {
     AuthenticationService authenticationService;
+    TokenCryptoService tokenCryptoService;
+    PolicyDecisionService policyDecisionService;
     private final RestClient.Builder builder;
 
+    @NonFinal
+    @Value("${jwt.keys.jwks-max-age-seconds:300}")
+    long jwksMaxAgeSeconds;
+
     @PostMapping("/login")
-    ApiResponse<AuthenticationResponse> authenticate(@RequestBody AuthenticationRequest authenticationRequest) {
-        var ans = authenticationService.authenticate(authenticationRequest);
+    ApiResponse<AuthenticationResponse> authenticate(
+            @RequestBody AuthenticationRequest authenticationRequest, HttpServletRequest httpServletRequest) {
+        var ans = authenticationService.authenticate(authenticationRequest, httpServletRequest.getRemoteAddr());
         return ApiResponse.<AuthenticationResponse>builder().result(ans).build();
     }
 
@@ -44,16 +69,51 @@ public class AuthenticationController {
         return ApiResponse.<IntrospectResponse>builder().result(ans).build();
     }
 
+    @PostMapping("/introspect/batch")
+    ApiResponse<List<IntrospectResponse>> introspectBatch(@RequestBody BatchIntrospectRequest request) {
+        var ans = authenticationService.introspectBatch(request);
+        return ApiResponse.<List<IntrospectResponse>>builder().result(ans).build();
+    }
+
+    @PostMapping("/authorize")
+    ApiResponse<List<AuthorizationDecision>> authorize(@RequestBody AuthorizationRequest request) {
+        var ans = policyDecisionService.authorize(request);
+        return ApiResponse.<List<AuthorizationDecision>>builder().result(ans).build();
+    }
+
     @PostMapping("/logout")
     ApiResponse<Void> logout(@RequestBody LogoutRequest request) throws ParseException, JOSEException {
         authenticationService.logout(request);
         return ApiResponse.<Void>builder().build();
     }
 
+    @PostMapping("/logout-all")
+    ApiResponse<Void> logoutAll() {
+        authenticationService.logoutAll();
+        return ApiResponse.<Void>builder().build();
+    }
+
     @PostMapping("/refresh")
     ApiResponse<RefreshResponse> refreshToken(@RequestBody RefreshRequest request)
             throws ParseException, JOSEException {
         var ans = authenticationService.refreshToken(request);
         return ApiResponse.<RefreshResponse>builder().result(ans).build();
     }
+
+    // keys only change on restart, so consumers may cache the set and revalidate it with If-None-Match
+    @GetMapping(value = "/jwks", produces = MediaType.APPLICATION_JSON_VALUE)
+    ResponseEntity<String> jwks(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        var jwkSet = tokenCryptoService.getJwkSet();
+        CacheControl cacheControl = CacheControl.maxAge(Duration.ofSeconds(jwksMaxAgeSeconds))
+                .cachePublic()
+                .staleWhileRevalidate(Duration.ofSeconds(jwksMaxAgeSeconds));
+        if (jwkSet.eTag().equals(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .cacheControl(cacheControl)
+                    .eTag(jwkSet.eTag())
+                    .build();
+        }
+        return ResponseEntity.ok().cacheControl(cacheControl).eTag(jwkSet.eTag()).body(jwkSet.json());
+    }
 }
@@ -11,6 +11,7 @@ import org.springframework.web.bind.annotation.*;
 
 import com.boot1.dto.request.PermissionRequest;
 import com.boot1.dto.response.ApiResponse;
+import com.boot1.dto.response.PageResponse;
 import com.boot1.dto.response.PermissionResponse;
 import com.boot1.service.PermissionService;
 
@@ -47,6 +48,18 @@ public class PermissionController {
                 .build();
     }
 
+    @GetMapping("/page")
+    ApiResponse<PageResponse<PermissionResponse>> pagePermission(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(required = false) String direction) {
+        return ApiResponse.<PageResponse<PermissionResponse>>builder()
+                .code(1)
+                .msg("<Page Permission Successfully>")
+                .result(permissionService.getPermissionsPage(cursor, size, direction))
+                .build();
+    }
+
     @GetMapping("/findByName/{name}")
     ApiResponse<PermissionResponse> findPermissionByName(@PathVariable String name) {
         return ApiResponse.<PermissionResponse>builder()
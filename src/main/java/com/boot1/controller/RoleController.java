@@ -7,6 +7,7 @@ import org.springframework.web.bind.annotation.*;
 
 import com.boot1.dto.request.RoleRequest;
 import com.boot1.dto.response.ApiResponse;
+import com.boot1.dto.response.PageResponse;
 import com.boot1.dto.response.RoleResponse;
 import com.boot1.service.RoleService;
 
@@ -39,6 +40,18 @@ public class RoleController {
                 .build();
     }
 
+    @GetMapping("/page")
+    public ApiResponse<PageResponse<RoleResponse>> getPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(required = false) String direction) {
+        return ApiResponse.<PageResponse<RoleResponse>>builder()
+                .code(1)
+                .msg("<Get Role Page Success>")
+                .result(roleService.getPage(cursor, size, direction))
+                .build();
+    }
+
     @PostMapping("/findByName/{roleName}")
     public ApiResponse<RoleResponse> findByName(@PathVariable String roleName) {
         return ApiResponse.<RoleResponse>builder()
@@ -1,16 +1,23 @@
 package com.boot1.controller;
 
+import java.io.InputStream;
 import java.util.List;
 
 import jakarta.validation.Valid;
 
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.boot1.dto.request.UserCreationRequest;
 import com.boot1.dto.request.UserUpdateRequest;
 import com.boot1.dto.response.ApiResponse;
+import com.boot1.dto.response.PageResponse;
+import com.boot1.dto.response.UserImportResponse;
 import com.boot1.dto.response.UserResponse;
+import com.boot1.service.UserExportService;
+import com.boot1.service.UserImportService;
 import com.boot1.service.UserService;
 
 import lombok.RequiredArgsConstructor;
@@ -22,6 +29,8 @@ import lombok.extern.slf4j.Slf4j;
 @RequiredArgsConstructor
 public class UserController {
     private final UserService userService;
+    private final UserExportService userExportService;
+    private final UserImportService userImportService;
 
     @PostMapping("/create")
     public ApiResponse<UserResponse> createUser(@RequestBody @Valid UserCreationRequest request) {
@@ -47,6 +56,43 @@ public class UserController {
                 .build();
     }
 
+    @GetMapping("/page")
+    public ApiResponse<PageResponse<UserResponse>> getUsersPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(required = false) String sort,
+            @RequestParam(required = false) String direction) {
+        return ApiResponse.<PageResponse<UserResponse>>builder()
+                .code(1)
+                .result(userService.getUsersPage(cursor, size, sort, direction))
+                .build();
+    }
+
+    // one user per line (NDJSON), written while the query runs
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportUsers() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(userExportService.exportUsers());
+    }
+
+    // the body is read as it arrives, a chunk of rows at a time
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ApiResponse<UserImportResponse> importUsers(InputStream body) {
+        return ApiResponse.<UserImportResponse>builder()
+                .code(1)
+                .result(userImportService.importJson(body))
+                .build();
+    }
+
+    @PostMapping(value = "/import", consumes = "text/csv")
+    public ApiResponse<UserImportResponse> importUsersCsv(InputStream body) {
+        return ApiResponse.<UserImportResponse>builder()
+                .code(1)
+                .result(userImportService.importCsv(body))
+                .build();
+    }
+
     @GetMapping("/me")
     public ApiResponse<UserResponse> getMyProfile() {
         return ApiResponse.<UserResponse>builder()
@@ -0,0 +1,15 @@
+package com.boot1.dto.request;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class AuthorizationCheck {
+    String token;
+    // a permission name, or ROLE_<role> to ask for a role
+    String permission;
+}
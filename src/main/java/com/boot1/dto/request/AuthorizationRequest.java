@@ -0,0 +1,15 @@
+package com.boot1.dto.request;
+
+import java.util.List;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class AuthorizationRequest {
+    List<AuthorizationCheck> checks;
+}
@@ -0,0 +1,16 @@
+package com.boot1.dto.request;
+
+import java.util.List;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class BatchIntrospectRequest {
+    List<String> tokens;
+    boolean includeClaims;
+}
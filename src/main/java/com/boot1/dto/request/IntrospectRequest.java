@@ -10,4 +10,6 @@ import lombok.experimental.FieldDefaults;
 @FieldDefaults(level = AccessLevel.PRIVATE)
 public class IntrospectRequest {
     String token;
+    // also return the verified claims, so callers need no follow-up /users/me
+    boolean includeClaims;
 }
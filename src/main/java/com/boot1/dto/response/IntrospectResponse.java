@@ -1,8 +1,17 @@
 package com.boot1.dto.response;
 
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import lombok.*;
 import lombok.experimental.FieldDefaults;
 
+/**
+ * Claims are only filled for valid tokens when the request sets {@code includeClaims}; {@code exp} and
+ * {@code iat} are epoch seconds.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
 @Data
 @Builder
 @NoArgsConstructor
@@ -10,4 +19,10 @@ import lombok.experimental.FieldDefaults;
 @FieldDefaults(level = AccessLevel.PRIVATE)
 public class IntrospectResponse {
     boolean valid;
+    String sub;
+    String scope;
+    List<String> permissions;
+    Long exp;
+    Long iat;
+    String jti;
 }
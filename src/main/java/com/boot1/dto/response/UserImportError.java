@@ -0,0 +1,17 @@
+package com.boot1.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+/** A rejected import row; {@code row} counts data rows from 1, not counting a CSV header. */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class UserImportError {
+    long row;
+    String username;
+    int code;
+    String msg;
+}
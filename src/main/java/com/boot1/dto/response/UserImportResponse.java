@@ -0,0 +1,19 @@
+package com.boot1.dto.response;
+
+import java.util.List;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+/** Outcome of a bulk import; {@code errors} lists the rejected rows, up to a configured limit. */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class UserImportResponse {
+    long received;
+    long created;
+    long failed;
+    List<UserImportError> errors;
+}
@@ -3,11 +3,10 @@ package com.boot1.dto.response;
 import java.time.LocalDate;
 import java.util.Set;
 
-import com.boot1.Entities.Role;
-
 import lombok.*;
 import lombok.experimental.FieldDefaults;
 
+/** A user with role names only; role permissions are served by {@code /roles}. */
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
@@ -20,5 +19,5 @@ public class UserResponse {
     String lastName;
     LocalDate dob;
     String email;
-    Set<Role> roles;
+    Set<String> roles;
 }
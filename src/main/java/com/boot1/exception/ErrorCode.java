@@ -33,6 +33,13 @@ public enum ErrorCode {
     LAST_NAME_EMPTY(-18, "Last name is empty", HttpStatus.BAD_REQUEST),
     EMAIL_EMPTY(-19, "Email is empty", HttpStatus.BAD_REQUEST),
     USERNAME_EXISTS(-20, "Username already exists", HttpStatus.CONFLICT),
+    PASSWORD_HASHING_BUSY(-21, "Too many concurrent password checks, retry later", HttpStatus.SERVICE_UNAVAILABLE),
+    TOO_MANY_LOGIN_ATTEMPTS(-22, "Too many login attempts, retry later", HttpStatus.TOO_MANY_REQUESTS),
+    INTROSPECT_BATCH_TOO_LARGE(-23, "Too many tokens in one introspect batch", HttpStatus.BAD_REQUEST),
+    AUTHORIZATION_BATCH_TOO_LARGE(-24, "Too many checks in one authorization batch", HttpStatus.BAD_REQUEST),
+    INVALID_CURSOR(-25, "Invalid page cursor", HttpStatus.BAD_REQUEST),
+    INVALID_IMPORT_FILE(-26, "Import file cannot be read", HttpStatus.BAD_REQUEST),
+    INVALID_IMPORT_ROW(-27, "Import row cannot be read", HttpStatus.BAD_REQUEST),
     ;
 
     int code;
@@ -1,13 +1,39 @@
 package com.boot1.repository;
 
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
+import java.util.stream.Stream;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.boot1.Entities.InvalidatedToken;
 
 @Repository
 public interface InvalidatedTokenRepository extends JpaRepository<InvalidatedToken, String> {
-    void deleteByExpTimeBefore(Date now);
+    @Query("select t.id from InvalidatedToken t")
+    Stream<String> streamAllIds();
+
+    @Query("select t.id from InvalidatedToken t where t.revokedAt >= :since")
+    Stream<String> streamIdsRevokedSince(@Param("since") Date since);
+
+    @Query("select max(t.revokedAt) from InvalidatedToken t")
+    Date findLatestRevokedAt();
+
+    @Query("select t.id from InvalidatedToken t where t.id in :ids")
+    List<String> findIdsIn(@Param("ids") Collection<String> ids);
+
+    /** Plain insert, so a JTI that is already there fails on the primary key instead of being overwritten. */
+    @Transactional
+    @Modifying
+    @Query(
+            nativeQuery = true,
+            value = "insert into invalidated_token (id, exp_time, exp_bucket, revoked_at)"
+                    + " values (:id, :expTime, :expBucket, current_timestamp)")
+    int insert(@Param("id") String id, @Param("expTime") Date expTime, @Param("expBucket") int expBucket);
 }
@@ -0,0 +1,21 @@
+package com.boot1.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.boot1.Entities.PermissionDictionaryVersion;
+
+@Repository
+public interface PermissionDictionaryVersionRepository extends JpaRepository<PermissionDictionaryVersion, Integer> {
+    /** Plain insert, so a version another instance stored first fails on the primary key instead of being merged. */
+    @Transactional
+    @Modifying
+    @Query(
+            nativeQuery = true,
+            value = "insert into permission_dictionary_version (version, names) values (:version, :names)")
+    int insert(@Param("version") int version, @Param("names") String names);
+}
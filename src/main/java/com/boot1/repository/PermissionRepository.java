@@ -4,20 +4,43 @@ import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
+import jakarta.persistence.QueryHint;
+
+import org.hibernate.jpa.HibernateHints;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
 import com.boot1.Entities.Permission;
 
+/** Permissions change rarely, so the lookups by name and the full list are query cached. */
 public interface PermissionRepository extends JpaRepository<Permission, String> {
+    @Override
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    List<Permission> findAll();
+
+    /** Not cached: the permission dictionary must see permissions created on other instances right away. */
+    @Query("select p.name from Permission p")
+    List<String> findAllNames();
+
     boolean existsByName(String permissionName);
 
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<Permission> findByName(String permissionName);
 
     Optional<Permission> findByDescription(String permissionDescription);
 
     void deletePermissionByName(String name);
 
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<Permission> findAllByNameIn(Set<String> permissionName);
 
     List<Permission> findAllByNameContainingIgnoreCase(String keyword);
+
+    Window<Permission> findAllBy(ScrollPosition position, Sort sort, Limit limit);
 }
@@ -4,11 +4,30 @@ import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
+import jakarta.persistence.QueryHint;
+
+import org.hibernate.jpa.HibernateHints;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
 import com.boot1.Entities.Role;
 
+/**
+ * Roles change rarely, so the lookups by name and the full list are query cached; see
+ * {@code HibernateCacheConfig}.
+ */
 public interface RoleRepository extends JpaRepository<Role, Long> {
+    @Override
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    List<Role> findAll();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<Role> findByName(String roleName);
 
     boolean existsByName(String roleName);
@@ -17,7 +36,14 @@ public interface RoleRepository extends JpaRepository<Role, Long> {
 
     void deleteByName(String roleName);
 
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Set<Role> findByNameIn(Set<String> names);
 
     List<Role> findAllByNameContainingIgnoreCase(String keyword);
+
+    /** One {@code [roleName, permissionName]} row per grant, and {@code [roleName, null]} for empty roles. */
+    @Query("select r.name, p.name from Role r left join r.permissions p")
+    List<Object[]> findAllGrants();
+
+    Window<Role> findAllBy(ScrollPosition position, Sort sort, Limit limit);
 }
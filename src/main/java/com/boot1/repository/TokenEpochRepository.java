@@ -0,0 +1,9 @@
+package com.boot1.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.boot1.Entities.TokenEpoch;
+
+@Repository
+public interface TokenEpochRepository extends JpaRepository<TokenEpoch, String> {}
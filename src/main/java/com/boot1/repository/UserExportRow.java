@@ -0,0 +1,7 @@
+package com.boot1.repository;
+
+import java.time.LocalDate;
+
+/** One user and one of their role names; a user without roles comes as a single row with {@code role} null. */
+public record UserExportRow(
+        String id, String username, String firstName, String lastName, LocalDate dob, String email, String role) {}
@@ -1,10 +1,26 @@
 package com.boot1.repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
+import jakarta.persistence.QueryHint;
+
+import org.hibernate.jpa.HibernateHints;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.boot1.Entities.User;
 
@@ -12,13 +28,92 @@ import com.boot1.Entities.User;
 public interface UserRepository extends JpaRepository<User, String> {
     boolean existsByUsername(String username);
 
+    @Query("select u.username from User u where u.username in :usernames")
+    List<String> findUsernamesIn(@Param("usernames") Collection<String> usernames);
+
+    // the finders below read users for UserResponse, so they fetch the roles in the same query
+
+    @Override
+    @EntityGraph(attributePaths = "roles")
+    List<User> findAll();
+
+    @Override
+    @EntityGraph(attributePaths = "roles")
+    Optional<User> findById(String id);
+
+    @EntityGraph(attributePaths = "roles")
     Optional<User> findByUsername(String username);
 
+    /** For issuing tokens, which carry the permissions of every role. */
+    @EntityGraph(attributePaths = {"roles", "roles.permissions"})
+    Optional<User> findWithPermissionsByUsername(String username);
+
+    @EntityGraph(attributePaths = "roles")
+    Optional<User> findByIdAndUsername(String id, String username);
+
+    @EntityGraph(attributePaths = "roles")
     Optional<User> findByEmail(String email);
 
+    @EntityGraph(attributePaths = "roles")
     List<User> findByFirstNameContaining(String firstName);
 
+    @EntityGraph(attributePaths = "roles")
     List<User> findByLastNameContaining(String lastName);
 
+    @EntityGraph(attributePaths = "roles")
     List<User> findByFirstNameAndLastName(String firstName, String lastName);
+
+    @Query("select u.username from User u join u.roles r where r.name = :roleName")
+    List<String> findUsernamesByRoleName(@Param("roleName") String roleName);
+
+    @Transactional
+    @Modifying
+    @Query("update User u set u.password = :newPassword where u.id = :id and u.password = :oldPassword")
+    int updatePassword(
+            @Param("id") String id,
+            @Param("oldPassword") String oldPassword,
+            @Param("newPassword") String newPassword);
+
+    /**
+     * One row per stored hash scheme: the {id} prefix plus the BCrypt cost, e.g. {@code {bcrypt}$2a$10},
+     * {@code $2a$10} for legacy un-prefixed hashes, or {@code {pbkdf2}}.
+     */
+    @Query(
+            """
+            select case
+                     when u.password like '{bcrypt}%' then substring(u.password, 1, 14)
+                     when u.password like '$2%' then substring(u.password, 1, 6)
+                     when u.password like '{%' then substring(u.password, 1, locate('}', u.password))
+                     else 'unknown' end,
+                   count(u)
+            from User u
+            group by case
+                     when u.password like '{bcrypt}%' then substring(u.password, 1, 14)
+                     when u.password like '$2%' then substring(u.password, 1, 6)
+                     when u.password like '{%' then substring(u.password, 1, locate('}', u.password))
+                     else 'unknown' end
+            """)
+    List<Object[]> countByPasswordScheme();
+
+    // no entity graph: a collection fetch would make Hibernate apply the limit in memory; see User.roles
+    Window<User> findAllBy(ScrollPosition position, Sort sort, Limit limit);
+
+    /**
+     * Every user in id order, one row per role, as plain values that never enter the persistence context. Needs
+     * a read-only transaction that stays open while the stream is read. With MySQL the fetch size only streams
+     * when the JDBC URL has {@code useCursorFetch=true}; otherwise the driver buffers the whole result.
+     */
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+        @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")
+    })
+    @Query(
+            """
+            select new com.boot1.repository.UserExportRow(
+                     u.id, u.username, u.firstName, u.lastName, u.dob, u.email, r.name)
+            from User u left join u.roles r
+            order by u.id
+            """)
+    Stream<UserExportRow> streamForExport();
 }
@@ -6,15 +6,16 @@ import java.time.temporal.ChronoUnit;
 import java.util.*;
 
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 
-import com.boot1.Entities.InvalidatedToken;
 import com.boot1.Entities.Permission;
 import com.boot1.Entities.User;
 import com.boot1.dto.request.AuthenticationRequest;
+import com.boot1.dto.request.BatchIntrospectRequest;
 import com.boot1.dto.request.IntrospectRequest;
 import com.boot1.dto.request.LogoutRequest;
 import com.boot1.dto.request.RefreshRequest;
@@ -23,11 +24,8 @@ import com.boot1.dto.response.IntrospectResponse;
 import com.boot1.dto.response.RefreshResponse;
 import com.boot1.exception.ApiException;
 import com.boot1.exception.ErrorCode;
-import com.boot1.repository.InvalidatedTokenRepository;
 import com.boot1.repository.UserRepository;
 import com.nimbusds.jose.*;
-import com.nimbusds.jose.crypto.MACSigner;
-import com.nimbusds.jose.crypto.MACVerifier;
 import com.nimbusds.jwt.JWTClaimsSet;
 import com.nimbusds.jwt.SignedJWT;
 
@@ -43,11 +41,14 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class AuthenticationService {
     UserRepository userRepository;
-    InvalidatedTokenRepository invalidatedTokenRepository;
-
-    @NonFinal
-    @Value("${jwt.signerKey}")
-    protected String signerKey;
+    TokenRevocationService tokenRevocationService;
+    TokenCryptoService tokenCryptoService;
+    PasswordHashingService passwordHashingService;
+    LoginAttemptLimiter loginAttemptLimiter;
+    PermissionDictionary permissionDictionary;
+    TokenEpochService tokenEpochService;
+    RefreshCoordinator refreshCoordinator;
+    BearerTokenPrefilter bearerTokenPrefilter;
 
     @NonFinal
     @Value("${jwt.valid-duration}")
@@ -57,55 +58,141 @@ public class AuthenticationService {
     @Value("${jwt.refreshable-duration}")
     protected long refreshableDuration;
 
-    public AuthenticationResponse authenticate(AuthenticationRequest request) {
+    @NonFinal
+    @Value("${jwt.compact-permissions:false}")
+    protected boolean compactPermissions;
+
+    @NonFinal
+    @Value("${jwt.introspect.batch-max-size:500}")
+    protected int introspectBatchMaxSize;
+
+    public AuthenticationResponse authenticate(AuthenticationRequest request, String clientIp) {
+        if (!loginAttemptLimiter.tryAcquire(request.getUsername(), clientIp)) {
+            throw new ApiException(ErrorCode.TOO_MANY_LOGIN_ATTEMPTS);
+        }
         var user = userRepository
-                .findByUsername((request.getUsername()))
+                .findWithPermissionsByUsername(request.getUsername())
                 .orElseThrow(() -> new ApiException(ErrorCode.USER_NOT_EXISTS));
         log.info("User Roles: " + user.getRoles());
-        log.info("SignerKey Authenticate : " + signerKey);
-        PasswordEncoder passwordEncoder = new BCryptPasswordEncoder(10);
-
-        boolean authenticated = passwordEncoder.matches(request.getPassword(), user.getPassword());
+        boolean authenticated = passwordHashingService.matches(request.getPassword(), user.getPassword());
         if (!authenticated) {
             throw new ApiException(ErrorCode.UNAUTHENTICATED);
         }
+        rehashIfOutdated(user, request.getPassword());
         // generate token
         var token = generateToken(user);
         return AuthenticationResponse.builder().token(token).success(true).build();
     }
 
+    private void rehashIfOutdated(User user, String rawPassword) {
+        if (!passwordHashingService.upgradeEncoding(user.getPassword())) return;
+        try {
+            String upgraded = passwordHashingService.encode(rawPassword);
+            if (userRepository.updatePassword(user.getId(), user.getPassword(), upgraded) == 1) {
+                user.setPassword(upgraded);
+            }
+        } catch (ApiException e) {
+            // the login itself succeeded; the hash is upgraded on a later login
+            log.warn("Password rehash skipped for {} : {}", user.getUsername(), e.getMessage());
+        }
+    }
+
     private String generateToken(User user) {
-        JWSHeader jwsHeader = new JWSHeader(JWSAlgorithm.HS512);
-        JWTClaimsSet jwtClaimsSet = new JWTClaimsSet.Builder()
+        JWTClaimsSet.Builder builder = new JWTClaimsSet.Builder()
                 .subject(user.getUsername())
                 .issuer("sontaypham")
                 .issueTime(new Date())
                 .expirationTime(new Date(
                         Instant.now().plus(refreshableDuration, ChronoUnit.SECONDS).toEpochMilli()))
                 .claim("scope", buildScope(user))
-                .claim("permission", buildPermissions(user))
-                .jwtID(UUID.randomUUID().toString())
-                .build();
-        Payload payload = new Payload(jwtClaimsSet.toJSONObject());
-        JWSObject jwsObject = new JWSObject(jwsHeader, payload);
-        try {
-            jwsObject.sign(new MACSigner(signerKey));
-            return jwsObject.serialize();
-        } catch (JOSEException e) {
-            throw new RuntimeException(e);
+                .jwtID(UUID.randomUUID().toString());
+        List<String> permissions = buildPermissions(user);
+        var compact = compactPermissions ? permissionDictionary.encode(permissions) : null;
+        if (compact != null) {
+            builder.claim(PermissionDictionary.VERSION_CLAIM, compact.version())
+                    .claim(PermissionDictionary.BITS_CLAIM, compact.bits());
+        } else {
+            builder.claim("permission", permissions);
         }
+        return tokenCryptoService.sign(builder.build());
     }
 
     public IntrospectResponse introspect(IntrospectRequest request) throws JOSEException, ParseException {
-        var token = request.getToken();
-        boolean isValid;
+        JWTClaimsSet claimsSet = verifiedClaims(request.getToken());
+        if (claimsSet != null && tokenRevocationService.isRevoked(claimsSet.getJWTID())) {
+            claimsSet = null;
+        }
+        return toIntrospectResponse(claimsSet, request.isIncludeClaims());
+    }
+
+    /**
+     * Introspects every token of the batch, answering in request order. The revocation check for the whole batch
+     * costs at most one query. Tokens are verified on the request thread: the epoch check may load from the
+     * database, which must not block the common fork-join pool that parallel streams share.
+     */
+    public List<IntrospectResponse> introspectBatch(BatchIntrospectRequest request) {
+        List<String> tokens = request.getTokens();
+        if (CollectionUtils.isEmpty(tokens)) return List.of();
+        if (tokens.size() > introspectBatchMaxSize) throw new ApiException(ErrorCode.INTROSPECT_BATCH_TOO_LARGE);
+        List<JWTClaimsSet> verified = tokens.stream().map(this::verifiedClaims).toList();
+        Set<String> revoked = tokenRevocationService.findRevoked(verified.stream()
+                .filter(Objects::nonNull)
+                .map(JWTClaimsSet::getJWTID)
+                .toList());
+        return verified.stream()
+                .map(claimsSet -> toIntrospectResponse(
+                        claimsSet == null || revoked.contains(claimsSet.getJWTID()) ? null : claimsSet,
+                        request.isIncludeClaims()))
+                .toList();
+    }
+
+    // claims of a token whose signature, expiry and epoch check out, or null; revocation is left to the caller
+    private JWTClaimsSet verifiedClaims(String token) {
+        if (!bearerTokenPrefilter.isWellFormed(token)) return null;
+        TokenDigest digest = TokenDigest.of(token);
+        if (bearerTokenPrefilter.isKnownBad(digest)) return null;
         try {
-            verifyToken(token, false);
-            isValid = true;
-        } catch (ApiException e) {
-            isValid = false;
+            return verifySignature(token, false).getJWTClaimsSet();
+        } catch (ParseException | ApiException e) {
+            bearerTokenPrefilter.markBad(digest);
+            return null;
+        }
+    }
+
+    // claimsSet is null for an invalid token; claims come from the verified token only, never from the database
+    private IntrospectResponse toIntrospectResponse(JWTClaimsSet claimsSet, boolean includeClaims) {
+        if (claimsSet == null) return IntrospectResponse.builder().valid(false).build();
+        if (!includeClaims) return IntrospectResponse.builder().valid(true).build();
+        return IntrospectResponse.builder()
+                .valid(true)
+                .sub(claimsSet.getSubject())
+                .scope((String) claimsSet.getClaim("scope"))
+                .permissions(permissionsOf(claimsSet))
+                .exp(epochSeconds(claimsSet.getExpirationTime()))
+                .iat(epochSeconds(claimsSet.getIssueTime()))
+                .jti(claimsSet.getJWTID())
+                .build();
+    }
+
+    private List<String> permissionsOf(JWTClaimsSet claimsSet) {
+        Object version = claimsSet.getClaim(PermissionDictionary.VERSION_CLAIM);
+        Object bits = claimsSet.getClaim(PermissionDictionary.BITS_CLAIM);
+        if (version instanceof Number number && bits instanceof String encoded) {
+            return permissionDictionary.decode(number.intValue(), encoded).orElse(Set.of()).stream()
+                    .map(GrantedAuthority::getAuthority)
+                    .sorted()
+                    .toList();
+        }
+        try {
+            List<String> permissions = claimsSet.getStringListClaim("permission");
+            return permissions == null ? List.of() : permissions;
+        } catch (ParseException e) {
+            return List.of();
         }
-        return IntrospectResponse.builder().valid(isValid).build();
+    }
+
+    private static Long epochSeconds(Date date) {
+        return date == null ? null : date.getTime() / 1000;
     }
 
     private String buildScope(User user) {
@@ -132,44 +219,71 @@ public class AuthenticationService {
             var signToken = verifyToken(request.getToken(), true);
             String jti = signToken.getJWTClaimsSet().getJWTID();
             Date expTime = signToken.getJWTClaimsSet().getExpirationTime();
-            InvalidatedToken invalidatedToken =
-                    InvalidatedToken.builder().id(jti).expTime(expTime).build();
-            invalidatedTokenRepository.save(invalidatedToken);
+            tokenRevocationService.revoke(jti, expTime);
         } catch (ApiException e) {
             log.error(e.getMessage());
         }
     }
 
+    /** Ends every session of the current user, including the one making the call. */
+    public void logoutAll() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        tokenEpochService.bump(auth.getName());
+    }
+
+    public SignedJWT verifyAccessToken(String token) throws JOSEException, ParseException {
+        return verifyToken(token, false);
+    }
+
     private SignedJWT verifyToken(String token, boolean isRefresh) throws JOSEException, ParseException {
-        JWSVerifier verifier = new MACVerifier(signerKey.getBytes()); // create verifier to get signer_key
+        SignedJWT signedJWT = verifySignature(token, isRefresh);
+        if (tokenRevocationService.isRevoked(signedJWT.getJWTClaimsSet().getJWTID()))
+            throw new ApiException(ErrorCode.UNAUTHENTICATED); // throw if already refresh
+        return signedJWT;
+    }
+
+    // signature, expiry and token epoch; the revocation check is left to the caller
+    private SignedJWT verifySignature(String token, boolean isRefresh) throws ParseException {
         SignedJWT signedJWT = SignedJWT.parse(token); // parse request token
+        JWTClaimsSet claimsSet = signedJWT.getJWTClaimsSet();
         Date expTime = (isRefresh) // calculator expiration time for refresh token
-                ? new Date(signedJWT
-                        .getJWTClaimsSet()
+                ? new Date(claimsSet
                         .getIssueTime()
                         .toInstant()
                         .plus(refreshableDuration, ChronoUnit.SECONDS)
                         .toEpochMilli())
-                : signedJWT.getJWTClaimsSet().getExpirationTime(); // or use expiration time of access token
-        var verified = signedJWT.verify(verifier); // verify signer_key
-        if (!verified && expTime.after(new Date())) throw new ApiException(ErrorCode.UNAUTHENTICATED); // if token
-        // throw exception cause cannot verify || out of date
-        if (invalidatedTokenRepository.existsById(signedJWT.getJWTClaimsSet().getJWTID()))
-            throw new ApiException(ErrorCode.UNAUTHENTICATED); // throw if already refresh
-        return signedJWT; // return new JWT
+                : claimsSet.getExpirationTime(); // or use expiration time of access token
+        var verified = tokenCryptoService.verify(signedJWT); // verify signer_key
+        if (!verified || expTime == null || !expTime.after(new Date()))
+            throw new ApiException(ErrorCode.UNAUTHENTICATED); // throw exception cause cannot verify || out of date
+        if (tokenEpochService.isStale(claimsSet.getSubject(), claimsSet.getIssueTime()))
+            throw new ApiException(ErrorCode.UNAUTHENTICATED); // issued before logout-all or a role change
+        return signedJWT;
     }
 
     public RefreshResponse refreshToken(RefreshRequest request) throws ParseException, JOSEException {
-        SignedJWT signJWT = verifyToken(request.getToken(), true);
-        String jti = signJWT.getJWTClaimsSet().getJWTID();
-        Date expTime = signJWT.getJWTClaimsSet().getExpirationTime();
-        InvalidatedToken invalidatedToken =
-                InvalidatedToken.builder().id(jti).expTime(expTime).build();
-        invalidatedTokenRepository.save(invalidatedToken);
-        var username = signJWT.getJWTClaimsSet().getSubject();
-        var user =
-                userRepository.findByUsername(username).orElseThrow(() -> new ApiException(ErrorCode.USER_NOT_EXISTS));
-        var refreshToken = generateToken(user);
+        JWTClaimsSet claimsSet = verifySignature(request.getToken(), true).getJWTClaimsSet();
+        // claiming the JTI is the revocation check; duplicates within the grace window share the new token
+        var refreshToken = refreshCoordinator.refresh(claimsSet.getJWTID(), () -> {
+            if (!tokenRevocationService.claim(claimsSet.getJWTID(), claimsSet.getExpirationTime()))
+                throw new ApiException(ErrorCode.UNAUTHENTICATED);
+            try {
+                var user = userRepository
+                        .findWithPermissionsByUsername(claimsSet.getSubject())
+                        .orElseThrow(() -> new ApiException(ErrorCode.USER_NOT_EXISTS));
+                return generateToken(user);
+            } catch (ApiException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                // no token was issued, so give the JTI back before the coordinator lets a retry in
+                try {
+                    tokenRevocationService.unclaim(claimsSet.getJWTID());
+                } catch (RuntimeException unclaimFailure) {
+                    e.addSuppressed(unclaimFailure);
+                }
+                throw e;
+            }
+        });
         return RefreshResponse.builder().token(refreshToken).success(true).build();
     }
 }
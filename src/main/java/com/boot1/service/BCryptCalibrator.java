@@ -0,0 +1,103 @@
+package com.boot1.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+/**
+ * Measures what one BCrypt hash costs on this machine for a range of strengths, recommends the highest
+ * strength that stays within a latency budget and estimates how many logins per second the cores can take.
+ * Runs at startup with {@code app.password.calibrate=true} or standalone through {@link #main(String[])}.
+ */
+public class BCryptCalibrator {
+    private static final int MIN_COST = 4;
+    private static final int MAX_COST = 16;
+    private static final String SAMPLE_PASSWORD = "Calibration-Password-1";
+
+    private final int samples;
+    private final int cores;
+
+    public BCryptCalibrator(int samples) {
+        this.samples = Math.max(1, samples);
+        this.cores = Runtime.getRuntime().availableProcessors();
+    }
+
+    public Report calibrate(long targetMillis, int configuredCost) {
+        warmUp();
+        List<CostSample> results = new ArrayList<>();
+        int recommended = MIN_COST;
+        for (int cost = MIN_COST; cost <= MAX_COST; cost++) {
+            CostSample sample = measure(cost);
+            results.add(sample);
+            if (sample.medianMillis() <= targetMillis) recommended = cost;
+            // every step doubles the work, so there is no point measuring far past the budget
+            if (sample.medianMillis() > targetMillis * 2 && cost >= configuredCost) break;
+        }
+        return new Report(cores, targetMillis, configuredCost, recommended, results);
+    }
+
+    private void warmUp() {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(MIN_COST);
+        for (int i = 0; i < 50; i++) {
+            encoder.matches(SAMPLE_PASSWORD, encoder.encode(SAMPLE_PASSWORD));
+        }
+    }
+
+    private CostSample measure(int cost) {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(cost);
+        String hash = encoder.encode(SAMPLE_PASSWORD);
+        double[] millis = new double[samples];
+        for (int i = 0; i < samples; i++) {
+            long start = System.nanoTime();
+            encoder.matches(SAMPLE_PASSWORD, hash);
+            millis[i] = (System.nanoTime() - start) / 1_000_000.0;
+        }
+        Arrays.sort(millis);
+        double median = millis[samples / 2];
+        return new CostSample(cost, median, cores * 1000.0 / median);
+    }
+
+    public record CostSample(int cost, double medianMillis, double maxLoginsPerSecond) {}
+
+    public record Report(
+            int cores, long targetMillis, int configuredCost, int recommendedCost, List<CostSample> samples) {
+        public CostSample sampleFor(int cost) {
+            return samples.stream().filter(s -> s.cost() == cost).findFirst().orElse(null);
+        }
+
+        public String format() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("BCrypt calibration on %d cores, target %d ms per hash%n", cores, targetMillis));
+            sb.append(String.format("%6s %14s %18s%n", "cost", "median ms", "max logins/s"));
+            for (CostSample s : samples) {
+                sb.append(String.format(
+                        "%6d %14.2f %18.1f%s%n",
+                        s.cost(),
+                        s.medianMillis(),
+                        s.maxLoginsPerSecond(),
+                        s.cost() == configuredCost ? "  <- configured" : ""));
+            }
+            sb.append(String.format("Recommended app.password.bcrypt-strength: %d", recommendedCost));
+            CostSample recommended = sampleFor(recommendedCost);
+            if (recommended != null) {
+                sb.append(String.format(" (~%.0f logins/s at full CPU)", recommended.maxLoginsPerSecond()));
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * {@code java -cp boot1.jar -Dloader.main=com.boot1.service.BCryptCalibrator
+     * org.springframework.boot.loader.launch.PropertiesLauncher [targetMillis] [configuredCost] [samples]}
+     */
+    public static void main(String[] args) {
+        long targetMillis = args.length > 0 ? Long.parseLong(args[0]) : 250;
+        int configuredCost = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int samples = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        System.out.println(new BCryptCalibrator(samples)
+                .calibrate(targetMillis, configuredCost)
+                .format());
+    }
+}
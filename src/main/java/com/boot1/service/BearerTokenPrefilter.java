@@ -0,0 +1,112 @@
+package com.boot1.service;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Turns away garbage bearer tokens before they are parsed or verified. {@link #isWellFormed} only walks the
+ * characters of the token: it has to fit the length limit, consist of three non-empty base64url segments and
+ * start with one of the headers {@link TokenCryptoService} accepts. Tokens that pass but then fail
+ * verification are remembered by digest for a while, so a client replaying the same bad token is refused
+ * without another parse, HMAC or lookup.
+ */
+@Service
+public class BearerTokenPrefilter {
+    private static final boolean[] BASE64URL = new boolean[128];
+
+    static {
+        for (char c = 'A'; c <= 'Z'; c++) BASE64URL[c] = true;
+        for (char c = 'a'; c <= 'z'; c++) BASE64URL[c] = true;
+        for (char c = '0'; c <= '9'; c++) BASE64URL[c] = true;
+        BASE64URL['-'] = true;
+        BASE64URL['_'] = true;
+    }
+
+    private final String[] headerSegments;
+    private final int maxLength;
+    private final Cache<TokenDigest, Boolean> rejected;
+
+    private final Counter malformed;
+    private final Counter knownBad;
+
+    public BearerTokenPrefilter(
+            TokenCryptoService tokenCryptoService,
+            MeterRegistry meterRegistry,
+            @Value("${jwt.prefilter.max-length:8192}") int maxLength,
+            @Value("${jwt.prefilter.rejected-cache.maximum-size:10000}") long rejectedMaximumSize,
+            @Value("${jwt.prefilter.rejected-cache.ttl-seconds:300}") long rejectedTtlSeconds) {
+        List<String> accepted = tokenCryptoService.getAcceptedHeaderSegments();
+        this.headerSegments = accepted.toArray(String[]::new);
+        this.maxLength = maxLength;
+        this.rejected = Caffeine.newBuilder()
+                .maximumSize(rejectedMaximumSize)
+                .expireAfterWrite(Duration.ofSeconds(rejectedTtlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, rejected, "auth.rejected-tokens");
+        malformed = Counter.builder("auth.token.prefilter")
+                .tag("result", "malformed")
+                .register(meterRegistry);
+        knownBad = Counter.builder("auth.token.prefilter")
+                .tag("result", "known_bad")
+                .register(meterRegistry);
+    }
+
+    /** Allocation-free shape check; {@code false} means the token cannot verify here. */
+    public boolean isWellFormed(String token) {
+        if (token == null || token.length() > maxLength || !hasAcceptedHeader(token)) return reject();
+        int dots = 0;
+        int segmentStart = 0;
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            if (c == '.') {
+                if (i == segmentStart || ++dots > 2) return reject();
+                segmentStart = i + 1;
+            } else if (c >= 128 || !BASE64URL[c]) {
+                return reject();
+            }
+        }
+        if (dots != 2 || segmentStart == token.length()) return reject();
+        return true;
+    }
+
+    public boolean isKnownBad(TokenDigest digest) {
+        if (rejected.getIfPresent(digest) == null) return false;
+        knownBad.increment();
+        return true;
+    }
+
+    /**
+     * Remembers a token that failed verification. Only for failures that stay failures: bad signature, expiry,
+     * revocation, token epoch. Database errors and the like must not land here.
+     */
+    public void markBad(TokenDigest digest) {
+        rejected.put(digest, Boolean.TRUE);
+    }
+
+    private boolean reject() {
+        malformed.increment();
+        return false;
+    }
+
+    private boolean hasAcceptedHeader(String token) {
+        for (String header : headerSegments) {
+            if (token.length() > header.length()
+                    && token.charAt(header.length()) == '.'
+                    && token.startsWith(header)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,25 +1,198 @@
 package com.boot1.service;
 
-import java.util.Date;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
-import com.boot1.repository.InvalidatedTokenRepository;
+import com.boot1.Entities.InvalidatedToken;
 
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
 
+/**
+ * Removes expired {@code invalidated_token} rows without one long delete holding locks on the table.
+ *
+ * <p>With {@code strategy: partition} and a MySQL table partitioned by {@code exp_bucket}, whole partitions
+ * whose hours are all in the past are dropped, and daily partitions are added ahead of time. The table has to
+ * be converted once, since MySQL wants the partition key in the primary key:
+ *
+ * <pre>
+ * alter table invalidated_token drop primary key, add primary key (id, exp_bucket);
+ * alter table invalidated_token partition by range (exp_bucket) (partition pmax values less than maxvalue);
+ * </pre>
+ *
+ * Otherwise, and for rows in {@code pmax}, expired rows are deleted in chunks walked in
+ * {@code (exp_time, id)} order, each chunk in its own transaction with a pause in between.
+ */
+@Slf4j
 @Service
-@RequiredArgsConstructor
 public class InvalidatedTokenCleanupJob {
-    private final InvalidatedTokenRepository invalidatedTokenRepository;
+    private static final String SELECT_CHUNK = "select id, exp_time from invalidated_token where exp_time < ?"
+            + " and (exp_time > ? or (exp_time = ? and id > ?)) order by exp_time, id limit ?";
+    // the keys between the previous chunk and the last row of this one, as one range on the (exp_time, id) index
+    private static final String DELETE_CHUNK = "delete from invalidated_token where exp_time < ?"
+            + " and (exp_time > ? or (exp_time = ? and id > ?)) and (exp_time < ? or (exp_time = ? and id <= ?))";
+    private static final String COUNT_EXPIRED = "select count(*) from invalidated_token where exp_time < ?";
+    private static final String LIST_PARTITIONS = "select partition_name, partition_description"
+            + " from information_schema.partitions where table_schema = database()"
+            + " and table_name = 'invalidated_token' and partition_name is not null";
+    private static final long HOURS_PER_PARTITION = 24;
 
-    @Scheduled(fixedRate = 3600000)
-    @Transactional
+    private final JdbcTemplate jdbcTemplate;
+    private final TokenRevocationService tokenRevocationService;
+    private final String strategy;
+    private final int batchSize;
+    private final long pauseMillis;
+    private final int partitionsAhead;
+
+    private final Counter rowsRemoved;
+    private final Counter partitionsDropped;
+    private final Timer duration;
+    private final AtomicLong backlog = new AtomicLong();
+
+    public InvalidatedTokenCleanupJob(
+            JdbcTemplate jdbcTemplate,
+            TokenRevocationService tokenRevocationService,
+            MeterRegistry meterRegistry,
+            @Value("${jwt.revocation-cleanup.strategy:chunked}") String strategy,
+            @Value("${jwt.revocation-cleanup.batch-size:1000}") int batchSize,
+            @Value("${jwt.revocation-cleanup.pause-ms:50}") long pauseMillis,
+            @Value("${jwt.revocation-cleanup.partitions-ahead:3}") int partitionsAhead) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tokenRevocationService = tokenRevocationService;
+        this.strategy = strategy;
+        this.batchSize = batchSize;
+        this.pauseMillis = pauseMillis;
+        this.partitionsAhead = partitionsAhead;
+
+        rowsRemoved = Counter.builder("auth.revocation.cleanup.rows")
+                .description("Expired revocation rows removed by chunked deletes")
+                .register(meterRegistry);
+        partitionsDropped = Counter.builder("auth.revocation.cleanup.partitions")
+                .description("Expired invalidated_token partitions dropped")
+                .register(meterRegistry);
+        duration = Timer.builder("auth.revocation.cleanup.duration").register(meterRegistry);
+        Gauge.builder("auth.revocation.cleanup.backlog", backlog, AtomicLong::get)
+                .description("Expired rows still in the table after the last run")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.revocation-cleanup.interval-ms:3600000}")
     public void cleanInvalidatedTokens() {
-        Date now = new Date();
-        invalidatedTokenRepository.deleteByExpTimeBefore(now);
-        System.out.println("Clean up completed! Time : " + now);
+        long start = System.nanoTime();
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        try {
+            int dropped = 0;
+            if ("partition".equals(strategy)) {
+                try {
+                    dropped = dropExpiredPartitions(now);
+                } catch (DataAccessException e) {
+                    log.warn("Cannot maintain invalidated_token partitions, deleting in chunks : {}", e.getMessage());
+                }
+            }
+            long removed = deleteInChunks(now);
+            backlog.set(jdbcTemplate.queryForObject(COUNT_EXPIRED, Long.class, now));
+            if (dropped > 0 || removed > 0) {
+                tokenRevocationService.rebuild();
+            }
+            log.info(
+                    "Clean up completed : {} partitions dropped, {} rows deleted, {} expired rows left, {} ms",
+                    dropped,
+                    removed,
+                    backlog.get(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (DataAccessException e) {
+            log.warn("Clean up of invalidated tokens failed : {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            duration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /** Each chunk commits on its own, so locks are held for one chunk at a time and replicas keep up. */
+    long deleteInChunks(Timestamp now) throws InterruptedException {
+        long removed = 0;
+        Timestamp lastExp = new Timestamp(0);
+        String lastId = "";
+        while (true) {
+            List<Object[]> chunk = jdbcTemplate.query(
+                    SELECT_CHUNK,
+                    (rs, i) -> new Object[] {rs.getString(1), rs.getTimestamp(2)},
+                    now,
+                    lastExp,
+                    lastExp,
+                    lastId,
+                    batchSize);
+            if (chunk.isEmpty()) return removed;
+            Object[] last = chunk.get(chunk.size() - 1);
+            int deleted = jdbcTemplate.update(
+                    DELETE_CHUNK, now, lastExp, lastExp, lastId, last[1], last[1], last[0]);
+            removed += deleted;
+            rowsRemoved.increment(deleted);
+            lastId = (String) last[0];
+            lastExp = (Timestamp) last[1];
+            if (chunk.size() < batchSize) return removed;
+            if (pauseMillis > 0) Thread.sleep(pauseMillis);
+        }
+    }
+
+    /**
+     * Drops partitions whose upper bound is in the past and splits {@code pmax} so that the next
+     * {@code partitions-ahead} days have their own partition. Does nothing if the table is not partitioned.
+     */
+    int dropExpiredPartitions(Timestamp now) {
+        List<Object[]> partitions =
+                jdbcTemplate.query(LIST_PARTITIONS, (rs, i) -> new Object[] {rs.getString(1), rs.getString(2)});
+        if (partitions.isEmpty()) return 0;
+        long currentBucket = InvalidatedToken.bucketOf(now);
+        long highestBound = 0;
+        boolean hasMax = false;
+        int dropped = 0;
+        for (Object[] partition : partitions) {
+            String name = (String) partition[0];
+            String description = (String) partition[1];
+            if ("MAXVALUE".equalsIgnoreCase(description)) {
+                hasMax = true;
+                continue;
+            }
+            long bound = Long.parseLong(description);
+            highestBound = Math.max(highestBound, bound);
+            // rows in the partition have exp_bucket < bound, so they expired before the current hour began
+            if (bound <= currentBucket) {
+                jdbcTemplate.execute("alter table invalidated_token drop partition `" + name + "`");
+                partitionsDropped.increment();
+                dropped++;
+            }
+        }
+        if (hasMax) {
+            addPartitionsAhead(currentBucket, highestBound);
+        }
+        return dropped;
+    }
+
+    private void addPartitionsAhead(long currentBucket, long highestBound) {
+        long firstBound = Math.max(highestBound, currentBucket - currentBucket % HOURS_PER_PARTITION);
+        long lastBound = (currentBucket / HOURS_PER_PARTITION + partitionsAhead + 1) * HOURS_PER_PARTITION;
+        List<String> definitions = new ArrayList<>();
+        for (long bound = firstBound + HOURS_PER_PARTITION; bound <= lastBound; bound += HOURS_PER_PARTITION) {
+            definitions.add("partition p" + bound + " values less than (" + bound + ")");
+        }
+        if (definitions.isEmpty()) return;
+        definitions.add("partition pmax values less than maxvalue");
+        jdbcTemplate.execute(
+                "alter table invalidated_token reorganize partition pmax into (" + String.join(", ", definitions) + ")");
+        log.info("Added {} invalidated_token partitions", definitions.size() - 1);
     }
 }
@@ -0,0 +1,122 @@
+package com.boot1.service;
+
+import java.io.IOException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.stereotype.Component;
+
+import com.boot1.dto.response.PageResponse;
+import com.boot1.exception.ApiException;
+import com.boot1.exception.ErrorCode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Keyset pagination for the list endpoints. Each page continues after the sort key (and id) of the last row
+ * of the previous one, so the database seeks into the index instead of skipping an offset. The cursor handed
+ * to clients is the base64url JSON of the sort and those keys; it carries the sort, so later pages ignore the
+ * sort parameters.
+ */
+@Component
+public class KeysetPaginator {
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final int defaultSize;
+    private final int maxSize;
+
+    public KeysetPaginator(
+            @Value("${app.pagination.default-size:50}") int defaultSize,
+            @Value("${app.pagination.max-size:500}") int maxSize) {
+        this.defaultSize = defaultSize;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @param sortKeys properties clients may sort by, the first being the default; each needs an index that
+     *     ends in the id and must be non-null, since the next page after a null key compares against null
+     * @param idKey the id property, which the scroll appends to every sort to make it unique
+     */
+    public <T, R> PageResponse<R> page(
+            String cursor,
+            Integer size,
+            String sortKey,
+            String direction,
+            List<String> sortKeys,
+            String idKey,
+            Scroll<T> scroll,
+            Function<T, R> mapper) {
+        Cursor position = cursor == null || cursor.isEmpty() ? first(sortKey, direction, sortKeys) : decode(cursor);
+        if (!sortKeys.contains(position.sort()) || !expectedKeys(position, idKey)) {
+            throw new ApiException(ErrorCode.INVALID_CURSOR);
+        }
+        Sort sort = Sort.by(Sort.Direction.fromString(position.direction()), position.sort());
+        int limit = size == null || size <= 0 ? defaultSize : Math.min(size, maxSize);
+        ScrollPosition scrollPosition =
+                position.keys().isEmpty() ? ScrollPosition.keyset() : ScrollPosition.forward(position.keys());
+
+        Window<T> window = scroll.scroll(scrollPosition, sort, Limit.of(limit));
+        String next = null;
+        if (window.hasNext() && !window.isEmpty()) {
+            var last = (KeysetScrollPosition) window.positionAt(window.size() - 1);
+            next = encode(new Cursor(position.sort(), position.direction(), new LinkedHashMap<>(last.getKeys())));
+        }
+        return PageResponse.<R>builder()
+                .items(window.getContent().stream().map(mapper).toList())
+                .next(next)
+                .build();
+    }
+
+    private Cursor first(String sortKey, String direction, List<String> sortKeys) {
+        String sort = sortKey == null || sortKey.isEmpty() ? sortKeys.get(0) : sortKey;
+        String dir = "desc".equalsIgnoreCase(direction) ? "desc" : "asc";
+        return new Cursor(sort, dir, Map.of());
+    }
+
+    // only the sort key and the id, and only as strings or null, so a crafted cursor cannot steer the query
+    private static boolean expectedKeys(Cursor cursor, String idKey) {
+        for (Map.Entry<String, Object> key : cursor.keys().entrySet()) {
+            boolean known = key.getKey().equals(cursor.sort()) || key.getKey().equals(idKey);
+            if (!known || !(key.getValue() == null || key.getValue() instanceof String)) return false;
+        }
+        return true;
+    }
+
+    private String encode(Cursor cursor) {
+        try {
+            return ENCODER.encodeToString(objectMapper.writeValueAsBytes(cursor));
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot write page cursor", e);
+        }
+    }
+
+    private Cursor decode(String cursor) {
+        try {
+            Cursor decoded = objectMapper.readValue(DECODER.decode(cursor), Cursor.class);
+            if (decoded.sort() == null || decoded.keys() == null) throw new ApiException(ErrorCode.INVALID_CURSOR);
+            if (!"asc".equals(decoded.direction()) && !"desc".equals(decoded.direction())) {
+                throw new ApiException(ErrorCode.INVALID_CURSOR);
+            }
+            return decoded;
+        } catch (IllegalArgumentException | IOException e) {
+            throw new ApiException(ErrorCode.INVALID_CURSOR);
+        }
+    }
+
+    @FunctionalInterface
+    public interface Scroll<T> {
+        Window<T> scroll(ScrollPosition position, Sort sort, Limit limit);
+    }
+
+    record Cursor(String sort, String direction, Map<String, Object> keys) {}
+}
@@ -0,0 +1,99 @@
+package com.boot1.service;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Token buckets per username and per client IP that stop credential stuffing before it costs a user lookup
+ * and a password hash. Each bucket is a single {@link AtomicLong} holding its theoretical arrival time
+ * (GCRA), so checking it is one CAS. Buckets expire once unused for as long as a full refill takes, so
+ * forgetting one changes nothing; at {@code max-keys} new keys are refused rather than making room, so a
+ * flood of fresh usernames or IPs can never reset a bucket that is still limiting.
+ */
+@Service
+public class LoginAttemptLimiter {
+    private final Limiter byUsername;
+    private final Limiter byIp;
+
+    public LoginAttemptLimiter(
+            MeterRegistry meterRegistry,
+            @Value("${app.login-limit.username.capacity:5}") int usernameCapacity,
+            @Value("${app.login-limit.username.refill-period-ms:12000}") long usernameRefillMillis,
+            @Value("${app.login-limit.ip.capacity:50}") int ipCapacity,
+            @Value("${app.login-limit.ip.refill-period-ms:1000}") long ipRefillMillis,
+            @Value("${app.login-limit.max-keys:100000}") int maxKeys) {
+        this.byUsername = new Limiter("username", usernameCapacity, usernameRefillMillis, maxKeys, meterRegistry);
+        this.byIp = new Limiter("ip", ipCapacity, ipRefillMillis, maxKeys, meterRegistry);
+    }
+
+    public boolean tryAcquire(String username, String clientIp) {
+        if (clientIp != null && !byIp.tryAcquire(clientIp)) return false;
+        return username == null || byUsername.tryAcquire(username.toLowerCase(Locale.ROOT));
+    }
+
+    private static final class Limiter {
+        private final long intervalNanos;
+        private final long toleranceNanos;
+        private final long maxKeys;
+        private final Cache<String, AtomicLong> buckets;
+        private final Counter rejected;
+        private final Counter full;
+
+        Limiter(String name, int capacity, long refillMillis, int maxKeys, MeterRegistry meterRegistry) {
+            this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(refillMillis);
+            this.toleranceNanos = intervalNanos * (Math.max(1, capacity) - 1);
+            this.maxKeys = Math.max(1, maxKeys);
+            // buckets are updated in place, so only access tells how recently one was used; an empty bucket is
+            // full again after tolerance plus one interval
+            this.buckets = Caffeine.newBuilder()
+                    .expireAfterAccess(Duration.ofNanos(toleranceNanos + intervalNanos))
+                    .build();
+            this.rejected = Counter.builder("auth.login.rejected").tag("key", name).register(meterRegistry);
+            this.full = Counter.builder("auth.login.limiter.full")
+                    .description("Attempts with a new key refused because max-keys buckets are tracked")
+                    .tag("key", name)
+                    .register(meterRegistry);
+            Gauge.builder("auth.login.limiter.keys", buckets, Cache::estimatedSize)
+                    .tag("key", name)
+                    .register(meterRegistry);
+        }
+
+        boolean tryAcquire(String key) {
+            long now = System.nanoTime();
+            AtomicLong cell = buckets.getIfPresent(key);
+            if (cell == null) {
+                if (buckets.estimatedSize() >= maxKeys) {
+                    // expired buckets may still be counted
+                    buckets.cleanUp();
+                    if (buckets.estimatedSize() >= maxKeys) {
+                        full.increment();
+                        rejected.increment();
+                        return false;
+                    }
+                }
+                cell = buckets.get(key, k -> new AtomicLong(now));
+            }
+            while (true) {
+                long tat = cell.get();
+                long base = Math.max(tat, now);
+                if (base - now > toleranceNanos) {
+                    rejected.increment();
+                    return false;
+                }
+                if (cell.compareAndSet(tat, base + intervalNanos)) return true;
+            }
+        }
+    }
+}
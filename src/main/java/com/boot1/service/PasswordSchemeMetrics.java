@@ -0,0 +1,53 @@
+package com.boot1.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.boot1.repository.UserRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Publishes {@code auth.password.scheme.users{scheme,cost}}, how many users are still stored under each
+ * hashing scheme, so the progress of rehash-on-login can be followed.
+ */
+@Slf4j
+@Service
+public class PasswordSchemeMetrics {
+    private final UserRepository userRepository;
+    private final MultiGauge usersByScheme;
+
+    public PasswordSchemeMetrics(UserRepository userRepository, MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.usersByScheme = MultiGauge.builder("auth.password.scheme.users").register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.password.scheme-metrics-interval-ms:600000}")
+    public void refresh() {
+        try {
+            List<MultiGauge.Row<?>> rows = new ArrayList<>();
+            for (Object[] row : userRepository.countByPasswordScheme()) {
+                rows.add(MultiGauge.Row.of(tags((String) row[0]), ((Number) row[1]).longValue()));
+            }
+            usersByScheme.register(rows, true);
+        } catch (DataAccessException e) {
+            log.warn("Cannot count password schemes : {}", e.getMessage());
+        }
+    }
+
+    private static Tags tags(String prefix) {
+        if ("unknown".equals(prefix)) return Tags.of("scheme", "unknown", "cost", "n/a");
+        int close = prefix.indexOf('}');
+        String scheme = close > 0 ? prefix.substring(1, close) : "bcrypt-unprefixed";
+        String hash = prefix.substring(close + 1);
+        String cost = hash.startsWith("$2") ? hash.substring(hash.lastIndexOf('$') + 1) : "n/a";
+        return Tags.of("scheme", scheme, "cost", cost);
+    }
+}
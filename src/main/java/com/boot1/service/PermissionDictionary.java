@@ -0,0 +1,202 @@
+package com.boot1.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Service;
+
+import com.boot1.Entities.PermissionDictionaryVersion;
+import com.boot1.enums.PermissionName;
+import com.boot1.repository.PermissionDictionaryVersionRepository;
+import com.boot1.repository.PermissionRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Numbers every known permission so a token can carry its permissions as a bitset ({@value #BITS_CLAIM})
+ * tagged with the dictionary version ({@value #VERSION_CLAIM}) instead of a list of names. The
+ * {@link PermissionName} constants come first, then the remaining permissions from the table in name order;
+ * the version is a checksum of that list, so every instance reading the same table agrees on it. When a
+ * different list already holds that checksum, the next free version is taken; every instance probes in the
+ * same order and compares the stored names, so they still agree and never decode bits against another list.
+ *
+ * <p>Each version is stored in {@code permission_dictionary_version} before any token carries it, so a token
+ * minted before a permission change still decodes after a restart or on an instance started since. Until the
+ * current version is stored, tokens get the plain list of names.
+ */
+@Slf4j
+@Service
+public class PermissionDictionary {
+    public static final String VERSION_CLAIM = "pv";
+    public static final String BITS_CLAIM = "pb";
+    private static final String NAME_SEPARATOR = "\n";
+    private static final int MAX_PROBES = 16;
+
+    private final PermissionRepository permissionRepository;
+    private final PermissionDictionaryVersionRepository versionRepository;
+    private final Map<Integer, List<String>> versions = new ConcurrentHashMap<>();
+    private final Cache<Key, Set<GrantedAuthority>> decoded =
+            Caffeine.newBuilder().maximumSize(1024).build();
+
+    private volatile Snapshot current;
+
+    public PermissionDictionary(
+            PermissionRepository permissionRepository, PermissionDictionaryVersionRepository versionRepository) {
+        this.permissionRepository = permissionRepository;
+        this.versionRepository = versionRepository;
+        this.current = snapshot(enumNames(), versionOf(enumNames()), false);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void refresh() {
+        try {
+            List<String> names = enumNames();
+            permissionRepository.findAllNames().stream()
+                    .filter(name -> !names.contains(name))
+                    .sorted()
+                    .forEach(names::add);
+            Integer version = store(names);
+            current = version == null ? snapshot(names, versionOf(names), false) : snapshot(names, version, true);
+        } catch (DataAccessException e) {
+            log.warn("Cannot load permission dictionary : {}", e.getMessage());
+        }
+    }
+
+    /** @return the compact form, or {@code null} when a permission is not in the dictionary even after a reload */
+    public Encoded encode(Collection<String> permissions) {
+        if (!current.stored() || !current.indexes().keySet().containsAll(permissions)) {
+            refresh();
+        }
+        Snapshot snapshot = current;
+        if (!snapshot.stored() || !snapshot.indexes().keySet().containsAll(permissions)) return null;
+        BitSet bits = new BitSet(snapshot.indexes().size());
+        for (String name : permissions) {
+            bits.set(snapshot.indexes().get(name));
+        }
+        return new Encoded(
+                snapshot.version(), Base64.getUrlEncoder().withoutPadding().encodeToString(bits.toByteArray()));
+    }
+
+    /**
+     * Immutable, cached authority set for a version/bitset pair.
+     *
+     * @return empty if the version is unknown here, which callers must not cache either
+     */
+    public Optional<Set<GrantedAuthority>> decode(int version, String bits) {
+        // unknown versions are not cached, so they resolve once the table catches up
+        return Optional.ofNullable(decoded.get(new Key(version, bits), this::expand));
+    }
+
+    private Set<GrantedAuthority> expand(Key key) {
+        List<String> names = versions.get(key.version());
+        if (names == null) {
+            names = load(key.version());
+        }
+        if (names == null) {
+            refresh();
+            names = versions.get(key.version());
+        }
+        if (names == null) {
+            log.warn("Token carries unknown permission dictionary version {}", key.version());
+            return null;
+        }
+        BitSet bits = BitSet.valueOf(Base64.getUrlDecoder().decode(key.bits()));
+        Set<GrantedAuthority> authorities = new LinkedHashSet<>();
+        for (int i = bits.nextSetBit(0); i >= 0 && i < names.size(); i = bits.nextSetBit(i + 1)) {
+            authorities.add(new SimpleGrantedAuthority(names.get(i)));
+        }
+        return Set.copyOf(authorities);
+    }
+
+    /** @return the version the names are stored under, or {@code null} if no free version was found */
+    private Integer store(List<String> names) {
+        Snapshot snapshot = current;
+        if (snapshot.stored() && snapshot.names().equals(names)) return snapshot.version();
+        String joined = String.join(NAME_SEPARATOR, names);
+        int version = versionOf(names);
+        for (int probe = 0; probe < MAX_PROBES; probe++, version++) {
+            Optional<String> stored =
+                    versionRepository.findById(version).map(PermissionDictionaryVersion::getNames);
+            if (stored.isEmpty()) {
+                try {
+                    versionRepository.insert(version, joined);
+                    return version;
+                } catch (DataIntegrityViolationException e) {
+                    // another instance stored this version first, maybe with other names
+                    stored = versionRepository.findById(version).map(PermissionDictionaryVersion::getNames);
+                }
+            }
+            if (stored.isPresent() && stored.get().equals(joined)) return version;
+            log.warn("Permission dictionary version {} is taken by another name list, trying the next", version);
+        }
+        log.error("No free permission dictionary version after {} probes, tokens carry plain names", MAX_PROBES);
+        return null;
+    }
+
+    private List<String> load(int version) {
+        try {
+            return versionRepository
+                    .findById(version)
+                    .map(stored -> {
+                        List<String> names = List.of(stored.getNames().split(NAME_SEPARATOR));
+                        versions.putIfAbsent(version, names);
+                        return names;
+                    })
+                    .orElse(null);
+        } catch (DataAccessException e) {
+            log.warn("Cannot load permission dictionary version {} : {}", version, e.getMessage());
+            return null;
+        }
+    }
+
+    private Snapshot snapshot(List<String> names, int version, boolean stored) {
+        List<String> ordered = List.copyOf(names);
+        // an unstored version may belong to another list in the table, so it never decodes
+        if (stored) versions.putIfAbsent(version, ordered);
+        Map<String, Integer> indexes = new HashMap<>();
+        for (int i = 0; i < ordered.size(); i++) {
+            indexes.put(ordered.get(i), i);
+        }
+        return new Snapshot(version, ordered, Map.copyOf(indexes), stored);
+    }
+
+    private static int versionOf(List<String> names) {
+        CRC32 crc = new CRC32();
+        // the same text that is stored, so a stored row can be checked against its version
+        crc.update(String.join(NAME_SEPARATOR, names).getBytes(StandardCharsets.UTF_8));
+        return (int) crc.getValue();
+    }
+
+    private static List<String> enumNames() {
+        List<String> names = new ArrayList<>();
+        for (PermissionName permissionName : PermissionName.values()) {
+            names.add(permissionName.name());
+        }
+        return names;
+    }
+
+    public record Encoded(int version, String bits) {}
+
+    private record Snapshot(int version, List<String> names, Map<String, Integer> indexes, boolean stored) {}
+
+    private record Key(int version, String bits) {}
+}
@@ -4,12 +4,12 @@ import java.util.List;
 import java.util.stream.Collectors;
 
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.boot1.Entities.Permission;
 import com.boot1.dto.request.PermissionRequest;
+import com.boot1.dto.response.PageResponse;
 import com.boot1.dto.response.PermissionResponse;
 import com.boot1.exception.ApiException;
 import com.boot1.exception.ErrorCode;
@@ -21,7 +21,6 @@ import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 
-@EnableMethodSecurity
 @Service
 @RequiredArgsConstructor
 @Slf4j
@@ -29,6 +28,9 @@ import lombok.extern.slf4j.Slf4j;
 public class PermissionService {
     PermissionRepository permissionRepository;
     PermissionMapper permissionMapper;
+    PermissionDictionary permissionDictionary;
+    PolicyDecisionService policyDecisionService;
+    KeysetPaginator keysetPaginator;
 
     @PreAuthorize("hasRole('ADMIN')")
     public PermissionResponse createPermission(PermissionRequest request) {
@@ -38,6 +40,7 @@ public class PermissionService {
         }
         Permission permission = permissionMapper.toPermission(request);
         permission = permissionRepository.save(permission);
+        permissionDictionary.refresh();
         return permissionMapper.toPermissionResponse(permission);
     }
 
@@ -49,6 +52,19 @@ public class PermissionService {
                 .collect(Collectors.toList());
     }
 
+    @PreAuthorize("hasRole('ADMIN')")
+    public PageResponse<PermissionResponse> getPermissionsPage(String cursor, Integer size, String direction) {
+        return keysetPaginator.page(
+                cursor,
+                size,
+                "name",
+                direction,
+                List.of("name"),
+                "name",
+                permissionRepository::findAllBy,
+                permissionMapper::toPermissionResponse);
+    }
+
     @PreAuthorize("hasRole('ADMIN')")
     public PermissionResponse findByName(String permissionName) {
         log.info("method findPermissionByName : {}", permissionName);
@@ -92,6 +108,8 @@ public class PermissionService {
                 .findByName(permissionName)
                 .orElseThrow(() -> new ApiException(ErrorCode.PERMISSION_NOT_FOUND));
         permissionRepository.deletePermissionByName(permissionName);
+        permissionDictionary.refresh();
+        policyDecisionService.rolesChanged();
     }
 
     @PreAuthorize("hasRole('ADMIN')")
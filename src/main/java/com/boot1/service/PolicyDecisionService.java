@@ -0,0 +1,195 @@
+package com.boot1.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.CollectionUtils;
+
+import com.boot1.dto.request.AuthorizationCheck;
+import com.boot1.dto.request.AuthorizationRequest;
+import com.boot1.dto.response.AuthorizationDecision;
+import com.boot1.exception.ApiException;
+import com.boot1.exception.ErrorCode;
+import com.boot1.repository.RoleRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Answers "may the bearer of this token do that" for other services, with the same authorities as
+ * {@code SecurityConfig}: {@code ROLE_<role>} for every role in {@code scope}, plus the permissions of those
+ * roles. Permissions come from an in-memory role to permission snapshot rather than from the token, so a role
+ * change applies to tokens issued before it. A change made on this instance is loaded when it commits; one
+ * made on another instance, or with plain SQL, shows after at most {@code app.authorization.refresh-interval-ms}.
+ * The token itself goes through the regular {@link JwtDecoder}, which keeps its verified-token cache and
+ * revocation checks.
+ *
+ * <p>The authorities resolved for a token are cached by JTI, tagged with the snapshot they were computed
+ * from; when the roles change the snapshot is replaced and older entries are recomputed on their next use.
+ */
+@Slf4j
+@Service
+public class PolicyDecisionService {
+    private final RoleRepository roleRepository;
+    private final JwtDecoder jwtDecoder;
+    private final int batchMaxSize;
+    private final Cache<String, Grants> grants;
+    private final AtomicLong changes = new AtomicLong();
+
+    private final Counter allowed;
+    private final Counter denied;
+
+    private volatile Snapshot snapshot;
+
+    public PolicyDecisionService(
+            RoleRepository roleRepository,
+            JwtDecoder jwtDecoder,
+            MeterRegistry meterRegistry,
+            @Value("${app.authorization.batch-max-size:500}") int batchMaxSize,
+            @Value("${app.authorization.cache.maximum-size:10000}") long cacheMaximumSize,
+            @Value("${app.authorization.cache.ttl-seconds:300}") long cacheTtlSeconds) {
+        this.roleRepository = roleRepository;
+        this.jwtDecoder = jwtDecoder;
+        this.batchMaxSize = batchMaxSize;
+        this.grants = Caffeine.newBuilder()
+                .maximumSize(cacheMaximumSize)
+                .expireAfterWrite(Duration.ofSeconds(cacheTtlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, grants, "auth.authorize.grants");
+        allowed = Counter.builder("auth.authorize.decisions")
+                .tag("result", "allow")
+                .register(meterRegistry);
+        denied = Counter.builder("auth.authorize.decisions")
+                .tag("result", "deny")
+                .register(meterRegistry);
+    }
+
+    /** One decision per check, in request order. An invalid token is denied everything. */
+    public List<AuthorizationDecision> authorize(AuthorizationRequest request) {
+        List<AuthorizationCheck> checks = request.getChecks();
+        if (CollectionUtils.isEmpty(checks)) return List.of();
+        if (checks.size() > batchMaxSize) throw new ApiException(ErrorCode.AUTHORIZATION_BATCH_TOO_LARGE);
+        Map<String, Set<String>> byToken = new HashMap<>();
+        List<AuthorizationDecision> decisions = new ArrayList<>(checks.size());
+        for (AuthorizationCheck check : checks) {
+            Set<String> authorities = byToken.computeIfAbsent(check.getToken(), this::authoritiesOf);
+            boolean allow = check.getPermission() != null && authorities.contains(check.getPermission());
+            (allow ? allowed : denied).increment();
+            decisions.add(AuthorizationDecision.builder().allowed(allow).build());
+        }
+        return decisions;
+    }
+
+    /**
+     * Reloads the snapshot once the current transaction commits, or right away outside of one. Called after
+     * every change to roles or their permissions.
+     */
+    public void rolesChanged() {
+        changes.incrementAndGet();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    refresh();
+                }
+            });
+        } else {
+            refresh();
+        }
+    }
+
+    /** Also runs on a schedule, for changes made on other instances. */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(
+            initialDelayString = "${app.authorization.refresh-interval-ms:30000}",
+            fixedDelayString = "${app.authorization.refresh-interval-ms:30000}")
+    public void refresh() {
+        try {
+            load();
+        } catch (DataAccessException e) {
+            log.warn("Cannot load role permissions : {}", e.getMessage());
+        }
+    }
+
+    private Snapshot load() {
+        long stamp = changes.get();
+        Map<String, Set<String>> permissionsByRole = new HashMap<>();
+        for (Object[] grant : roleRepository.findAllGrants()) {
+            Set<String> permissions = permissionsByRole.computeIfAbsent((String) grant[0], k -> new HashSet<>());
+            if (grant[1] != null) permissions.add((String) grant[1]);
+        }
+        Map<String, Set<String>> frozen = new HashMap<>();
+        permissionsByRole.forEach((role, permissions) -> frozen.put(role, Set.copyOf(permissions)));
+        Snapshot loaded = new Snapshot(Map.copyOf(frozen));
+        Snapshot current = snapshot;
+        // unchanged grants keep the current snapshot, and with it the authorities cached for it
+        if (loaded.equals(current)) return current;
+        // a change that landed while we read the table gets its own reload
+        if (changes.get() == stamp) {
+            snapshot = loaded;
+            grants.invalidateAll();
+        }
+        return loaded;
+    }
+
+    private Set<String> authoritiesOf(String token) {
+        Jwt jwt;
+        try {
+            jwt = token == null ? null : jwtDecoder.decode(token);
+        } catch (JwtException e) {
+            jwt = null;
+        }
+        if (jwt == null) return Set.of();
+        Snapshot current = snapshot;
+        if (current == null) current = load();
+        if (jwt.getId() == null) return resolve(jwt, current);
+        Grants cached = grants.getIfPresent(jwt.getId());
+        if (cached != null && cached.snapshot() == current) return cached.authorities();
+        Set<String> authorities = resolve(jwt, current);
+        grants.put(jwt.getId(), new Grants(current, authorities));
+        return authorities;
+    }
+
+    private static Set<String> resolve(Jwt jwt, Snapshot snapshot) {
+        Object scope = jwt.getClaims().get("scope");
+        if (scope == null) return Set.of();
+        // tokens carry scope as a space separated string
+        List<String> roles = scope instanceof String value
+                ? List.of(value.trim().split("\\s+"))
+                : jwt.getClaimAsStringList("scope");
+        Set<String> authorities = new HashSet<>();
+        for (String role : roles) {
+            if (role.isEmpty()) continue;
+            authorities.add("ROLE_" + role);
+            authorities.addAll(snapshot.permissionsByRole().getOrDefault(role, Collections.emptySet()));
+        }
+        return Set.copyOf(authorities);
+    }
+
+    private record Snapshot(Map<String, Set<String>> permissionsByRole) {}
+
+    private record Grants(Snapshot snapshot, Set<String> authorities) {}
+}
@@ -0,0 +1,90 @@
+package com.boot1.service;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.boot1.exception.ApiException;
+import com.boot1.exception.ErrorCode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Single-flight for refresh: the first request for a JTI mints the new token, and every duplicate that arrives
+ * while it runs or within the grace window after gets that same token instead of failing. Mobile clients that
+ * retry on reconnect then end up with one session. A replayed token gets the same answer within the window, so
+ * keep it short.
+ */
+@Service
+public class RefreshCoordinator {
+    private final Cache<String, CompletableFuture<String>> results;
+    private final long waitMillis;
+    private final Counter minted;
+    private final Counter shared;
+    private final Counter rejected;
+
+    public RefreshCoordinator(
+            MeterRegistry meterRegistry,
+            @Value("${jwt.refresh.grace-seconds:10}") long graceSeconds,
+            @Value("${jwt.refresh.wait-ms:5000}") long waitMillis) {
+        this.results = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofSeconds(graceSeconds))
+                .build();
+        this.waitMillis = waitMillis;
+        this.minted = Counter.builder("auth.refresh").tag("result", "minted").register(meterRegistry);
+        this.shared = Counter.builder("auth.refresh").tag("result", "shared").register(meterRegistry);
+        this.rejected = Counter.builder("auth.refresh").tag("result", "rejected").register(meterRegistry);
+    }
+
+    /** Runs {@code mint} once per JTI within the grace window and returns its token to every caller. */
+    public String refresh(String jti, Supplier<String> mint) {
+        CompletableFuture<String> mine = new CompletableFuture<>();
+        CompletableFuture<String> existing = results.asMap().putIfAbsent(jti, mine);
+        if (existing != null) {
+            return await(existing);
+        }
+        try {
+            String token = mint.get();
+            mine.complete(token);
+            minted.increment();
+            return token;
+        } catch (ApiException e) {
+            // the JTI is spent, duplicates can fail without asking the database again
+            mine.completeExceptionally(e);
+            rejected.increment();
+            throw e;
+        } catch (RuntimeException e) {
+            // nothing was decided, let a retry try again
+            results.asMap().remove(jti, mine);
+            mine.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private String await(CompletableFuture<String> existing) {
+        try {
+            String token = existing.get(waitMillis, TimeUnit.MILLISECONDS);
+            shared.increment();
+            return token;
+        } catch (ExecutionException e) {
+            rejected.increment();
+            if (e.getCause() instanceof ApiException apiException) throw apiException;
+            throw new IllegalStateException("Refresh failed", e.getCause());
+        } catch (TimeoutException e) {
+            rejected.increment();
+            throw new ApiException(ErrorCode.UNAUTHENTICATED);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ApiException(ErrorCode.UNAUTHENTICATED);
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package com.boot1.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import jakarta.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import com.boot1.Entities.InvalidatedToken;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Write-behind buffer for revocations. A revoked JTI is appended to a local log, fsynced, and kept in memory
+ * until a flush writes it to {@code invalidated_token} in JDBC batches, so logout does not wait on the
+ * database. Concurrent callers share one fsync: whoever syncs covers every line written before it.
+ *
+ * <p>The log is split into segments. A flush starts a new segment, writes everything pending, and deletes the
+ * older segments once the batches have committed. On startup the remaining segments are read back, so a crash
+ * between logout and flush loses nothing. The insert skips existing ids, which makes replay safe. The log
+ * directory must be absolute, so a different working directory after a restart cannot hide the log; without
+ * one the queue only lives in memory.
+ *
+ * <p>Only this instance answers from the queue. Others see a revocation once its row is flushed and their
+ * revocation filter has refreshed, and not at all while it sits in the log of an instance that is down.
+ */
+@Slf4j
+@Service
+public class RevocationQueue {
+    private static final String INSERT_SQL = "insert into invalidated_token (id, exp_time, exp_bucket, revoked_at)"
+            + " select ?, ?, ?, current_timestamp from dual"
+            + " where not exists (select 1 from invalidated_token where id = ?)";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-\\d{1,18}\\.log");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final Path logDir;
+    private final int batchSize;
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+
+    private final Object writeLock = new Object();
+    private final Object syncLock = new Object();
+    private FileChannel channel;
+    private long segment;
+    private long written;
+    private long synced;
+
+    private final DistributionSummary batchSizes;
+    private final Timer flushLag;
+    private final Counter flushFailures;
+
+    public RevocationQueue(
+            JdbcTemplate jdbcTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${jwt.revocation-queue.enabled:true}") boolean enabled,
+            @Value("${jwt.revocation-queue.log-dir:}") String logDir,
+            @Value("${jwt.revocation-queue.batch-size:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.logDir = StringUtils.hasText(logDir) ? Path.of(logDir) : null;
+        this.batchSize = batchSize;
+        if (enabled && this.logDir != null && !this.logDir.isAbsolute()) {
+            throw new IllegalStateException("jwt.revocation-queue.log-dir must be an absolute path, got " + logDir);
+        }
+        if (enabled && this.logDir == null) {
+            log.warn("No jwt.revocation-queue.log-dir, revocations not yet flushed are lost if this instance stops");
+        }
+
+        Gauge.builder("auth.revocation.queue.pending", pending, Map::size).register(meterRegistry);
+        batchSizes = DistributionSummary.builder("auth.revocation.flush.batch.size")
+                .baseUnit("tokens")
+                .register(meterRegistry);
+        flushLag = Timer.builder("auth.revocation.flush.lag")
+                .description("Time from revocation to its row being committed")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        flushFailures = Counter.builder("auth.revocation.flush.failures").register(meterRegistry);
+
+        if (enabled && this.logDir != null) {
+            replay();
+        }
+    }
+
+    /**
+     * Queues a revocation. Returns once the log line is on disk.
+     *
+     * @return {@code false} if write-behind is off or the log cannot be written; the caller then stores the row
+     *     itself
+     */
+    public boolean enqueue(String jti, Date expTime) {
+        if (!enabled) return false;
+        if (logDir == null) {
+            pending.put(jti, new Pending(expTime, System.nanoTime()));
+            return true;
+        }
+        byte[] line = (jti + '\t' + expTime.getTime() + '\n').getBytes(StandardCharsets.UTF_8);
+        long end;
+        try {
+            synchronized (writeLock) {
+                ByteBuffer buffer = ByteBuffer.wrap(line);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                written += line.length;
+                end = written;
+                pending.put(jti, new Pending(expTime, System.nanoTime()));
+            }
+            sync(end);
+            return true;
+        } catch (IOException e) {
+            log.warn("Cannot append revocation of {} to log : {}", jti, e.getMessage());
+            return false;
+        }
+    }
+
+    public boolean contains(String jti) {
+        return pending.containsKey(jti);
+    }
+
+    public int size() {
+        return pending.size();
+    }
+
+    /**
+     * Writes everything queued so far. {@code committed} gets the ids of each batch after it commits and before
+     * they stop being answered from memory.
+     *
+     * @return the number of revocations written, or -1 if a batch failed and the rest stay queued
+     */
+    public synchronized int flush(Consumer<Collection<String>> committed) {
+        if (pending.isEmpty()) return 0;
+        long sealed;
+        try {
+            sealed = rotate();
+        } catch (IOException e) {
+            log.warn("Cannot start a new revocation log segment : {}", e.getMessage());
+            return -1;
+        }
+        List<Map.Entry<String, Pending>> snapshot = new ArrayList<>(pending.entrySet());
+        int flushed = 0;
+        for (int from = 0; from < snapshot.size(); from += batchSize) {
+            List<Map.Entry<String, Pending>> batch =
+                    snapshot.subList(from, Math.min(from + batchSize, snapshot.size()));
+            try {
+                jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, entry) -> {
+                    ps.setString(1, entry.getKey());
+                    ps.setTimestamp(2, new Timestamp(entry.getValue().expTime().getTime()));
+                    ps.setInt(3, InvalidatedToken.bucketOf(entry.getValue().expTime()));
+                    ps.setString(4, entry.getKey());
+                });
+            } catch (DataAccessException e) {
+                flushFailures.increment();
+                log.warn("Cannot flush {} revocations, keeping them queued : {}", pending.size(), e.getMessage());
+                return -1;
+            }
+            committed.accept(batch.stream().map(Map.Entry::getKey).toList());
+            long now = System.nanoTime();
+            for (Map.Entry<String, Pending> entry : batch) {
+                flushLag.record(now - entry.getValue().enqueuedNanos(), TimeUnit.NANOSECONDS);
+                pending.remove(entry.getKey(), entry.getValue());
+            }
+            batchSizes.record(batch.size());
+            flushed += batch.size();
+        }
+        deleteSegmentsBefore(sealed);
+        return flushed;
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        synchronized (writeLock) {
+            // later revocations fail to append and are stored by the caller
+            if (channel != null && channel.isOpen()) {
+                channel.force(false);
+                channel.close();
+            }
+        }
+    }
+
+    // one fsync covers every line written before it started, so concurrent logouts share the cost
+    private void sync(long end) throws IOException {
+        synchronized (syncLock) {
+            if (synced >= end) return;
+            long target;
+            FileChannel current;
+            synchronized (writeLock) {
+                target = written;
+                current = channel;
+            }
+            current.force(false);
+            synced = target;
+        }
+    }
+
+    /** Starts a new segment and returns its number; every earlier segment is complete and on disk. */
+    private long rotate() throws IOException {
+        if (logDir == null) return 0;
+        synchronized (syncLock) {
+            synchronized (writeLock) {
+                channel.force(false);
+                channel.close();
+                segment++;
+                channel = open(segment);
+                synced = written;
+                return segment;
+            }
+        }
+    }
+
+    private void replay() {
+        try {
+            Files.createDirectories(logDir);
+            long last = 0;
+            for (Path file : segments()) {
+                last = Math.max(last, segmentNumber(file));
+                for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                    int tab = line.indexOf('\t');
+                    if (tab <= 0) continue; // torn write at crash time
+                    try {
+                        Date expTime = new Date(Long.parseLong(line.substring(tab + 1)));
+                        pending.put(line.substring(0, tab), new Pending(expTime, System.nanoTime()));
+                    } catch (NumberFormatException e) {
+                        log.warn("Skipping malformed revocation log line in {}", file);
+                    }
+                }
+            }
+            segment = last + 1;
+            channel = open(segment);
+            if (!pending.isEmpty()) {
+                log.info("Replayed {} queued revocations from {}", pending.size(), logDir);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot open revocation log in " + logDir, e);
+        }
+    }
+
+    private void deleteSegmentsBefore(long sealed) {
+        if (logDir == null) return;
+        try {
+            for (Path file : segments()) {
+                if (segmentNumber(file) < sealed) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            // the rows are committed, the worst case is replaying them again
+            log.warn("Cannot delete flushed revocation log segments : {}", e.getMessage());
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(logDir)) {
+            return files.filter(f -> SEGMENT_NAME.matcher(f.getFileName().toString()).matches())
+                    .toList();
+        }
+    }
+
+    private FileChannel open(long number) throws IOException {
+        return FileChannel.open(
+                logDir.resolve(SEGMENT_PREFIX + number + SEGMENT_SUFFIX),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    private static long segmentNumber(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private record Pending(Date expTime, long enqueuedNanos) {}
+}
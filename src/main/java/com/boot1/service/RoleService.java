@@ -6,19 +6,20 @@ import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.boot1.Entities.Permission;
 import com.boot1.Entities.Role;
 import com.boot1.dto.request.RoleRequest;
+import com.boot1.dto.response.PageResponse;
 import com.boot1.dto.response.RoleResponse;
 import com.boot1.exception.ApiException;
 import com.boot1.exception.ErrorCode;
 import com.boot1.mapper.RoleMapper;
 import com.boot1.repository.PermissionRepository;
 import com.boot1.repository.RoleRepository;
+import com.boot1.repository.UserRepository;
 
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
@@ -27,13 +28,16 @@ import lombok.extern.slf4j.Slf4j;
 
 @Service
 @Slf4j
-@EnableMethodSecurity
 @RequiredArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
 public class RoleService {
     RoleRepository roleRepository;
     RoleMapper roleMapper;
     PermissionRepository permissionRepository;
+    UserRepository userRepository;
+    TokenEpochService tokenEpochService;
+    PolicyDecisionService policyDecisionService;
+    KeysetPaginator keysetPaginator;
 
 //    @PreAuthorize("hasRole('ADMIN')")
     public RoleResponse create(RoleRequest roleRequest) {
@@ -49,6 +53,7 @@ public class RoleService {
         Role role = roleMapper.toRole(roleRequest);
         role.setPermissions(new HashSet<>(permissions));
         role = roleRepository.save(role);
+        policyDecisionService.rolesChanged();
         return roleMapper.toRoleResponse(role);
     }
 
@@ -56,6 +61,18 @@ public class RoleService {
         return roleRepository.findAll().stream().map(roleMapper::toRoleResponse).collect(Collectors.toList());
     }
 
+    public PageResponse<RoleResponse> getPage(String cursor, Integer size, String direction) {
+        return keysetPaginator.page(
+                cursor,
+                size,
+                "name",
+                direction,
+                List.of("name"),
+                "name",
+                roleRepository::findAllBy,
+                roleMapper::toRoleResponse);
+    }
+
     @PreAuthorize("hasRole('ADMIN')")
     public RoleResponse findByName(String roleName) {
         log.info("<Find Role Method> {}", roleName);
@@ -84,7 +101,9 @@ public class RoleService {
     public void deleteByName(String roleName) {
         log.info("<Delete Role Method> {}", roleName);
         Role role = roleRepository.findByName(roleName).orElseThrow(() -> new ApiException(ErrorCode.ROLE_NOT_FOUND));
+        endSessionsOf(roleName);
         roleRepository.deleteByName(roleName);
+        policyDecisionService.rolesChanged();
     }
 
     @PreAuthorize("hasRole('ADMIN')")
@@ -103,6 +122,8 @@ public class RoleService {
                 .orElseThrow(() -> new ApiException(ErrorCode.ROLE_NOT_FOUND));
         roleMapper.updateRoleFromRequest(roleRequest, role);
         roleRepository.save(role);
+        endSessionsOf(role.getName());
+        policyDecisionService.rolesChanged();
         return roleMapper.toRoleResponse(role);
     }
 
@@ -122,6 +143,13 @@ public class RoleService {
         }
         role.getPermissions().addAll(permissions);
         Role save = roleRepository.save(role);
+        endSessionsOf(roleName);
+        policyDecisionService.rolesChanged();
         return roleMapper.toRoleResponse(save);
     }
+
+    // tokens of the role's users carry its old permissions
+    private void endSessionsOf(String roleName) {
+        tokenEpochService.bumpAll(userRepository.findUsernamesByRoleName(roleName));
+    }
 }
@@ -0,0 +1,326 @@
+package com.boot1.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.OctetKeyPair;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.util.Base64URL;
+import com.nimbusds.jose.util.JSONObjectUtils;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Single owner of the JWT signing keys. The HS512 key is derived once at startup and every thread keeps its
+ * own {@link Mac}, so signing and verifying a token never repeats the key setup or provider lookup that
+ * {@code new MACSigner(..)} / {@code new MACVerifier(..)} do on each call.
+ *
+ * <p>With {@code jwt.algorithm} set to RS256 or EdDSA, tokens are signed with the first private key of the
+ * JWK set at {@code jwt.keys.location} and carry its {@code kid}. Every key in the set verifies tokens with
+ * its {@code kid}, which is how keys are rotated: publish the new key, then move it to the top once consumers
+ * have fetched it, and drop the old one after its tokens expire. The public half of the set is served from
+ * {@code /auth/jwks} so other services can verify tokens without calling introspect. HS512 tokens signed with
+ * {@code jwt.signerKey} are only accepted in those modes with {@code jwt.accept-hs512} on, which lets a switch
+ * of modes leave existing sessions alone until they expire.
+ */
+@Slf4j
+@Service
+public class TokenCryptoService {
+    private static final String HMAC_ALGORITHM = "HmacSHA512";
+    private static final int MIN_KEY_BYTES = 64;
+    private static final int MIN_RSA_BITS = 2048;
+    private static final byte[] ED25519_X509_PREFIX = HexFormat.of().parseHex("302a300506032b6570032100");
+    private static final byte[] ED25519_PKCS8_PREFIX = HexFormat.of().parseHex("302e020100300506032b657004220420");
+
+    private final SecretKey secretKey;
+    private final ThreadLocal<Mac> macs;
+    private final JWSAlgorithm algorithm;
+    private final String headerSegment;
+    private final PrivateKey signingKey;
+    private final Map<String, VerificationKey> verificationKeys = new HashMap<>();
+    private final ThreadLocal<Map<String, Signature>> signatures = ThreadLocal.withInitial(HashMap::new);
+    private final JwkSetDocument jwkSet;
+    private final List<String> acceptedHeaderSegments = new ArrayList<>();
+
+    public TokenCryptoService(String signerKey) {
+        this(signerKey, JWSAlgorithm.HS512.getName(), "", false);
+    }
+
+    @Autowired
+    public TokenCryptoService(
+            @Value("${jwt.signerKey:}") String signerKey,
+            @Value("${jwt.algorithm:HS512}") String algorithm,
+            @Value("${jwt.keys.location:}") String keysLocation,
+            @Value("${jwt.accept-hs512:false}") boolean acceptHs512) {
+        this.algorithm = JWSAlgorithm.parse(algorithm);
+        boolean hs512 = JWSAlgorithm.HS512.equals(this.algorithm);
+        if (hs512 || acceptHs512) {
+            byte[] keyBytes = signerKey.getBytes(StandardCharsets.UTF_8);
+            if (keyBytes.length == 0) {
+                throw new IllegalStateException("jwt.signerKey is required for HS512");
+            }
+            if (keyBytes.length < MIN_KEY_BYTES) {
+                throw new IllegalStateException("jwt.signerKey must be at least 512 bits for HS512");
+            }
+            this.secretKey = new SecretKeySpec(keyBytes, HMAC_ALGORITHM);
+            acceptedHeaderSegments.add(new JWSHeader(JWSAlgorithm.HS512).toBase64URL().toString());
+        } else {
+            // a secret left in the config must not keep HS512 tokens valid after moving to asymmetric keys
+            this.secretKey = null;
+        }
+        this.macs = ThreadLocal.withInitial(this::newMac);
+
+        if (hs512) {
+            this.signingKey = null;
+            this.headerSegment = new JWSHeader(JWSAlgorithm.HS512).toBase64URL().toString();
+            this.jwkSet = JwkSetDocument.of(new JWKSet());
+            return;
+        }
+        if (!JWSAlgorithm.RS256.equals(this.algorithm) && !JWSAlgorithm.EdDSA.equals(this.algorithm)) {
+            throw new IllegalStateException("jwt.algorithm must be one of HS512, RS256, EdDSA");
+        }
+        List<JWK> keys = StringUtils.hasText(keysLocation) ? loadKeys(keysLocation) : List.of(generateKey());
+        String signingKid = null;
+        PrivateKey privateKey = null;
+        for (JWK jwk : keys) {
+            VerificationKey key = toVerificationKey(jwk);
+            if (verificationKeys.putIfAbsent(jwk.getKeyID(), key) != null) {
+                throw new IllegalStateException("Duplicate kid " + jwk.getKeyID() + " in " + keysLocation);
+            }
+            acceptedHeaderSegments.add(new JWSHeader.Builder(key.algorithm())
+                    .keyID(jwk.getKeyID())
+                    .build()
+                    .toBase64URL()
+                    .toString());
+            if (privateKey == null && jwk.isPrivate() && key.algorithm().equals(this.algorithm)) {
+                privateKey = toPrivateKey(jwk);
+                signingKid = jwk.getKeyID();
+            }
+        }
+        if (privateKey == null) {
+            throw new IllegalStateException("No " + algorithm + " private key in " + keysLocation);
+        }
+        this.signingKey = privateKey;
+        this.headerSegment = new JWSHeader.Builder(this.algorithm)
+                .keyID(signingKid)
+                .build()
+                .toBase64URL()
+                .toString();
+        this.jwkSet = JwkSetDocument.of(new JWKSet(keys).toPublicJWKSet());
+        log.info("Signing tokens with {} key {}, {} key(s) accepted", algorithm, signingKid, keys.size());
+    }
+
+    /** Public keys in JWK set form; empty in HS512 mode, where the only key is the shared secret. */
+    public JwkSetDocument getJwkSet() {
+        return jwkSet;
+    }
+
+    /**
+     * Encoded JOSE headers of every token this instance can verify, exactly as the instances sharing its keys
+     * write them, so malformed tokens can be turned away by comparing bytes.
+     */
+    public List<String> getAcceptedHeaderSegments() {
+        return List.copyOf(acceptedHeaderSegments);
+    }
+
+    public String sign(JWTClaimsSet claimsSet) {
+        String signingInput = headerSegment + "." + Base64URL.encode(claimsSet.toString());
+        byte[] input = signingInput.getBytes(StandardCharsets.US_ASCII);
+        byte[] signature;
+        if (signingKey == null) {
+            signature = macs.get().doFinal(input);
+        } else {
+            try {
+                Signature signer = signature(algorithm);
+                signer.initSign(signingKey);
+                signer.update(input);
+                signature = signer.sign();
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Cannot sign token with " + algorithm, e);
+            }
+        }
+        return signingInput + "." + Base64URL.encode(signature);
+    }
+
+    public boolean verify(SignedJWT signedJWT) {
+        JWSHeader header = signedJWT.getHeader();
+        if (JWSAlgorithm.HS512.equals(header.getAlgorithm())) {
+            if (secretKey == null) return false;
+            byte[] expected = macs.get().doFinal(signedJWT.getSigningInput());
+            return MessageDigest.isEqual(expected, signedJWT.getSignature().decode());
+        }
+        VerificationKey key = header.getKeyID() == null ? null : verificationKeys.get(header.getKeyID());
+        // the key decides the algorithm, never the header
+        if (key == null || !key.algorithm().equals(header.getAlgorithm())) {
+            return false;
+        }
+        try {
+            Signature verifier = signature(key.algorithm());
+            verifier.initVerify(key.publicKey());
+            verifier.update(signedJWT.getSigningInput());
+            return verifier.verify(signedJWT.getSignature().decode());
+        } catch (GeneralSecurityException e) {
+            return false;
+        }
+    }
+
+    private Signature signature(JWSAlgorithm jwsAlgorithm) throws GeneralSecurityException {
+        String name = JWSAlgorithm.RS256.equals(jwsAlgorithm) ? "SHA256withRSA" : "Ed25519";
+        Map<String, Signature> cached = signatures.get();
+        Signature signature = cached.get(name);
+        if (signature == null) {
+            signature = Signature.getInstance(name);
+            cached.put(name, signature);
+        }
+        return signature;
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(secretKey);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot initialise " + HMAC_ALGORITHM, e);
+        }
+    }
+
+    private static List<JWK> loadKeys(String location) {
+        try (InputStream in = new DefaultResourceLoader().getResource(location).getInputStream()) {
+            List<JWK> keys = JWKSet.load(in).getKeys();
+            for (JWK jwk : keys) {
+                if (jwk.getKeyID() == null) {
+                    throw new IllegalStateException("Every key in " + location + " needs a kid");
+                }
+            }
+            return keys;
+        } catch (IOException | ParseException e) {
+            throw new IllegalStateException("Cannot read JWK set from " + location, e);
+        }
+    }
+
+    private JWK generateKey() {
+        log.warn("jwt.keys.location is not set, signing with a key generated for this process only;"
+                + " tokens will not verify on other instances or after a restart");
+        String kid = UUID.randomUUID().toString();
+        try {
+            if (JWSAlgorithm.RS256.equals(algorithm)) {
+                KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+                generator.initialize(MIN_RSA_BITS);
+                KeyPair pair = generator.generateKeyPair();
+                return new RSAKey.Builder((RSAPublicKey) pair.getPublic())
+                        .privateKey(pair.getPrivate())
+                        .keyID(kid)
+                        .keyUse(KeyUse.SIGNATURE)
+                        .algorithm(JWSAlgorithm.RS256)
+                        .build();
+            }
+            KeyPair pair = KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+            byte[] x509 = pair.getPublic().getEncoded();
+            byte[] pkcs8 = pair.getPrivate().getEncoded();
+            return new OctetKeyPair.Builder(
+                            Curve.Ed25519, Base64URL.encode(Arrays.copyOfRange(x509, x509.length - 32, x509.length)))
+                    .d(Base64URL.encode(Arrays.copyOfRange(pkcs8, pkcs8.length - 32, pkcs8.length)))
+                    .keyID(kid)
+                    .keyUse(KeyUse.SIGNATURE)
+                    .algorithm(JWSAlgorithm.EdDSA)
+                    .build();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot generate " + algorithm + " key", e);
+        }
+    }
+
+    private static VerificationKey toVerificationKey(JWK jwk) {
+        try {
+            if (jwk instanceof RSAKey rsaKey) {
+                if (rsaKey.size() < MIN_RSA_BITS) {
+                    throw new IllegalStateException("RSA key " + jwk.getKeyID() + " is shorter than 2048 bits");
+                }
+                return new VerificationKey(JWSAlgorithm.RS256, rsaKey.toRSAPublicKey());
+            }
+            if (jwk instanceof OctetKeyPair okp && Curve.Ed25519.equals(okp.getCurve())) {
+                return new VerificationKey(
+                        JWSAlgorithm.EdDSA,
+                        KeyFactory.getInstance("Ed25519")
+                                .generatePublic(new X509EncodedKeySpec(der(ED25519_X509_PREFIX, okp.getDecodedX()))));
+            }
+        } catch (GeneralSecurityException | JOSEException e) {
+            throw new IllegalStateException("Cannot read key " + jwk.getKeyID(), e);
+        }
+        throw new IllegalStateException("Unsupported key type for " + jwk.getKeyID() + ", use RSA or Ed25519");
+    }
+
+    private static PrivateKey toPrivateKey(JWK jwk) {
+        try {
+            if (jwk instanceof RSAKey rsaKey) {
+                return rsaKey.toRSAPrivateKey();
+            }
+            return KeyFactory.getInstance("Ed25519")
+                    .generatePrivate(
+                            new PKCS8EncodedKeySpec(der(ED25519_PKCS8_PREFIX, ((OctetKeyPair) jwk).getDecodedD())));
+        } catch (GeneralSecurityException | JOSEException e) {
+            throw new IllegalStateException("Cannot read private key " + jwk.getKeyID(), e);
+        }
+    }
+
+    // the JDK takes Ed25519 keys in DER form only, a fixed prefix in front of the raw 32 bytes of the JWK
+    private static byte[] der(byte[] prefix, byte[] raw) {
+        byte[] der = Arrays.copyOf(prefix, prefix.length + raw.length);
+        System.arraycopy(raw, 0, der, prefix.length, raw.length);
+        return der;
+    }
+
+    private record VerificationKey(JWSAlgorithm algorithm, PublicKey publicKey) {}
+
+    /** Serialised JWK set and its strong ETag, computed once since the keys only change on restart. */
+    public record JwkSetDocument(String json, String eTag) {
+        static JwkSetDocument of(JWKSet publicKeys) {
+            String json = JSONObjectUtils.toJSONString(publicKeys.toJSONObject(true));
+            try {
+                byte[] digest =
+                        MessageDigest.getInstance("SHA-256").digest(json.getBytes(StandardCharsets.UTF_8));
+                return new JwkSetDocument(json, "\"" + Base64URL.encode(digest) + "\"");
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
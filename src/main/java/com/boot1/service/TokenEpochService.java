@@ -0,0 +1,80 @@
+package com.boot1.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.boot1.Entities.TokenEpoch;
+import com.boot1.repository.TokenEpochRepository;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Per-user "tokens not before" time. Moving it to now revokes every token the user holds with one write,
+ * which is how logout-everywhere and role or password changes end old sessions. Epochs are cached in epoch
+ * seconds, the precision of {@code iat}; a token issued in the same second as the bump stays valid. Other
+ * instances see a bump once their cached entry expires.
+ */
+@Service
+public class TokenEpochService {
+    private final TokenEpochRepository tokenEpochRepository;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final LoadingCache<String, Long> notBefore;
+
+    public TokenEpochService(
+            TokenEpochRepository tokenEpochRepository,
+            VerifiedTokenCache verifiedTokenCache,
+            MeterRegistry meterRegistry,
+            @Value("${jwt.token-epoch.cache.maximum-size:100000}") long maximumSize,
+            @Value("${jwt.token-epoch.cache.ttl-seconds:30}") long ttlSeconds) {
+        this.tokenEpochRepository = tokenEpochRepository;
+        this.verifiedTokenCache = verifiedTokenCache;
+        this.notBefore = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build(this::load);
+        CaffeineCacheMetrics.monitor(meterRegistry, notBefore, "auth.token-epochs");
+    }
+
+    /** @return whether the token was issued before the user's current epoch */
+    public boolean isStale(String username, Date issueTime) {
+        if (issueTime == null) return true;
+        return issueTime.toInstant().getEpochSecond() < notBefore.get(username);
+    }
+
+    public void bump(String username) {
+        bumpAll(List.of(username));
+    }
+
+    public void bumpAll(Collection<String> usernames) {
+        if (usernames.isEmpty()) return;
+        long now = Instant.now().getEpochSecond();
+        Date notBeforeDate = Date.from(Instant.ofEpochSecond(now));
+        tokenEpochRepository.saveAll(usernames.stream()
+                .map(username -> TokenEpoch.builder()
+                        .username(username)
+                        .notBefore(notBeforeDate)
+                        .build())
+                .toList());
+        for (String username : usernames) {
+            notBefore.put(username, now);
+            verifiedTokenCache.invalidateSubject(username);
+        }
+    }
+
+    private Long load(String username) {
+        return tokenEpochRepository
+                .findById(username)
+                .map(epoch -> epoch.getNotBefore().toInstant().getEpochSecond())
+                .orElse(0L);
+    }
+}
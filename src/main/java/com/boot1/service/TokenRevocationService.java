@@ -0,0 +1,352 @@
+package com.boot1.service;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.boot1.Entities.InvalidatedToken;
+import com.boot1.repository.InvalidatedTokenRepository;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Owns the set of revoked JTIs. A Bloom filter of every row in {@code InvalidatedToken} sits in front of
+ * the table so that the common case, a token that was never revoked, is answered from memory; the database
+ * is only asked when the filter reports a possible hit. New revocations go through {@link RevocationQueue}
+ * and are answered from it until their rows are written.
+ *
+ * <p>Rows written by other instances are picked up by {@link #refresh}, which loads every id whose
+ * {@code revoked_at} is past the last one seen, less an overlap for transactions that committed late. A
+ * filter that has not been refreshed within {@code max-lag-ms} is not trusted and lookups go to the table.
+ */
+@Slf4j
+@Service
+public class TokenRevocationService {
+    private final InvalidatedTokenRepository invalidatedTokenRepository;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final RevocationQueue revocationQueue;
+    private final TransactionTemplate readOnlyTransaction;
+    private final long expectedInsertions;
+    private final double falsePositiveProbability;
+    private final long refreshOverlapMillis;
+    private final long maxLagNanos;
+
+    private final LongAdder negatives = new LongAdder();
+    private final LongAdder confirmedHits = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+
+    private volatile BloomFilter filter;
+    private volatile BloomFilter rebuilding;
+
+    // rebuilds and refreshes take turns, so neither moves the watermark past rows the other has not loaded
+    private final Object syncLock = new Object();
+    private Date watermark;
+    private volatile long syncedAtNanos;
+
+    public TokenRevocationService(
+            InvalidatedTokenRepository invalidatedTokenRepository,
+            VerifiedTokenCache verifiedTokenCache,
+            RevocationQueue revocationQueue,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${jwt.revocation-filter.expected-insertions:100000}") long expectedInsertions,
+            @Value("${jwt.revocation-filter.fpp:0.01}") double falsePositiveProbability,
+            @Value("${jwt.revocation-filter.refresh-overlap-ms:5000}") long refreshOverlapMillis,
+            @Value("${jwt.revocation-filter.max-lag-ms:5000}") long maxLagMillis) {
+        this.invalidatedTokenRepository = invalidatedTokenRepository;
+        this.verifiedTokenCache = verifiedTokenCache;
+        this.revocationQueue = revocationQueue;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.readOnlyTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveProbability = falsePositiveProbability;
+        this.refreshOverlapMillis = refreshOverlapMillis;
+        this.maxLagNanos = TimeUnit.MILLISECONDS.toNanos(maxLagMillis);
+
+        Gauge.builder("auth.revocation.filter.bits", this, s -> s.filter == null ? 0 : s.filter.bitSize())
+                .baseUnit("bits")
+                .register(meterRegistry);
+        Gauge.builder("auth.revocation.filter.entries", this, s -> s.filter == null ? 0 : s.filter.entries())
+                .register(meterRegistry);
+        Gauge.builder("auth.revocation.filter.expected.fpp", this, s -> s.filter == null
+                        ? 0
+                        : s.filter.expectedFpp())
+                .register(meterRegistry);
+        Gauge.builder("auth.revocation.filter.lag", this, s -> s.filter == null
+                        ? 0
+                        : (System.nanoTime() - s.syncedAtNanos) / 1e9)
+                .description("Time since the filter last caught up with the table")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        Gauge.builder("auth.revocation.filter.observed.fpp", this, TokenRevocationService::observedFpp)
+                .register(meterRegistry);
+        FunctionCounter.builder("auth.revocation.filter.lookups", negatives, LongAdder::sum)
+                .tag("result", "negative")
+                .register(meterRegistry);
+        FunctionCounter.builder("auth.revocation.filter.lookups", confirmedHits, LongAdder::sum)
+                .tag("result", "revoked")
+                .register(meterRegistry);
+        FunctionCounter.builder("auth.revocation.filter.lookups", falsePositives, LongAdder::sum)
+                .tag("result", "false_positive")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        synchronized (syncLock) {
+            long start = System.nanoTime();
+            try {
+                BloomFilter next = readOnlyTransaction.execute(status -> load());
+                filter = next;
+                syncedAtNanos = start;
+                log.info("Revocation filter rebuilt with {} entries ({} bits)", next.entries(), next.bitSize());
+            } catch (DataAccessException | TransactionException e) {
+                // keep answering from the previous filter, or from the table if there is none yet
+                log.warn("Cannot rebuild revocation filter : {}", e.getMessage());
+            } finally {
+                rebuilding = null;
+            }
+        }
+    }
+
+    /** Adds the rows other instances wrote since the last rebuild or refresh. */
+    @Scheduled(fixedDelayString = "${jwt.revocation-filter.refresh-interval-ms:1000}")
+    public void refresh() {
+        synchronized (syncLock) {
+            BloomFilter current = filter;
+            if (current == null) {
+                rebuild();
+                return;
+            }
+            long start = System.nanoTime();
+            try {
+                readOnlyTransaction.executeWithoutResult(status -> {
+                    // read before the ids, so a row committed in between is loaded again next time
+                    Date latest = invalidatedTokenRepository.findLatestRevokedAt();
+                    Date since = new Date(watermark == null ? 0 : watermark.getTime() - refreshOverlapMillis);
+                    try (Stream<String> ids = invalidatedTokenRepository.streamIdsRevokedSince(since)) {
+                        ids.filter(id -> !current.mightContain(id)).forEach(current::put);
+                    }
+                    if (latest != null) watermark = latest;
+                });
+                syncedAtNanos = start;
+            } catch (DataAccessException | TransactionException e) {
+                // once max-lag-ms has passed, lookups go to the table until a refresh succeeds
+                log.warn("Cannot refresh revocation filter : {}", e.getMessage());
+            }
+        }
+    }
+
+    private BloomFilter load() {
+        Date latest = invalidatedTokenRepository.findLatestRevokedAt();
+        long count = invalidatedTokenRepository.count();
+        BloomFilter next = new BloomFilter(Math.max(expectedInsertions, count * 2), falsePositiveProbability);
+        // revocations that land while we scan the table are written to both filters
+        rebuilding = next;
+        try (Stream<String> ids = invalidatedTokenRepository.streamAllIds()) {
+            ids.forEach(next::put);
+        }
+        watermark = latest;
+        return next;
+    }
+
+    public void revoke(String jti, Date expTime) {
+        if (!revocationQueue.enqueue(jti, expTime)) {
+            invalidatedTokenRepository.save(
+                    InvalidatedToken.builder().id(jti).expTime(expTime).build());
+        }
+        remember(jti);
+    }
+
+    /**
+     * Revokes {@code jti} only if nobody has yet, with one insert against the primary key, so two instances
+     * refreshing the same token cannot both win.
+     *
+     * @return {@code false} if the JTI was already revoked
+     */
+    public boolean claim(String jti, Date expTime) {
+        if (revocationQueue.contains(jti)) return false;
+        try {
+            invalidatedTokenRepository.insert(jti, expTime, InvalidatedToken.bucketOf(expTime));
+        } catch (DataIntegrityViolationException e) {
+            return false;
+        }
+        remember(jti);
+        return true;
+    }
+
+    /**
+     * Undoes a {@link #claim} whose refresh failed before a new token was issued. The JTI stays in the filter,
+     * which only costs a lookup in the table.
+     */
+    public void unclaim(String jti) {
+        invalidatedTokenRepository.deleteById(jti);
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.revocation-queue.flush-interval-ms:200}")
+    public void flushQueued() {
+        // a rebuild may have scanned the table before these rows committed, so add them again before the
+        // queue stops answering for them
+        revocationQueue.flush(ids -> ids.forEach(this::putInFilters));
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        flushQueued();
+    }
+
+    public boolean isRevoked(String jti) {
+        if (revocationQueue.contains(jti)) {
+            confirmedHits.increment();
+            return true;
+        }
+        BloomFilter current = trustedFilter();
+        if (current != null && !current.mightContain(jti)) {
+            negatives.increment();
+            return false;
+        }
+        boolean revoked = invalidatedTokenRepository.existsById(jti);
+        if (current != null) {
+            (revoked ? confirmedHits : falsePositives).increment();
+        }
+        return revoked;
+    }
+
+    /**
+     * Batch form of {@link #isRevoked}: the filter answers for most JTIs and the possible hits are resolved
+     * with a single {@code IN} query.
+     *
+     * @return the revoked JTIs among {@code jtis}
+     */
+    public Set<String> findRevoked(Collection<String> jtis) {
+        Set<String> revoked = new HashSet<>();
+        Set<String> candidates = new LinkedHashSet<>();
+        BloomFilter current = trustedFilter();
+        for (String jti : jtis) {
+            if (revocationQueue.contains(jti)) {
+                confirmedHits.increment();
+                revoked.add(jti);
+            } else if (current != null && !current.mightContain(jti)) {
+                negatives.increment();
+            } else {
+                candidates.add(jti);
+            }
+        }
+        if (candidates.isEmpty()) return revoked;
+        List<String> found = invalidatedTokenRepository.findIdsIn(candidates);
+        revoked.addAll(found);
+        if (current != null) {
+            confirmedHits.add(found.size());
+            falsePositives.add(candidates.size() - found.size());
+        }
+        return revoked;
+    }
+
+    /** The filter, or {@code null} if there is none or it may be missing rows older than {@code max-lag-ms}. */
+    private BloomFilter trustedFilter() {
+        BloomFilter current = filter;
+        if (current == null || System.nanoTime() - syncedAtNanos > maxLagNanos) return null;
+        return current;
+    }
+
+    private void remember(String jti) {
+        verifiedTokenCache.invalidateJti(jti);
+        putInFilters(jti);
+    }
+
+    private void putInFilters(String jti) {
+        BloomFilter current = filter;
+        if (current != null) current.put(jti);
+        BloomFilter next = rebuilding;
+        if (next != null) next.put(jti);
+    }
+
+    private double observedFpp() {
+        long fp = falsePositives.sum();
+        long total = fp + negatives.sum();
+        return total == 0 ? 0 : (double) fp / total;
+    }
+
+    static final class BloomFilter {
+        private final AtomicLongArray bits;
+        private final long bitSize;
+        private final int hashFunctions;
+        private final LongAdder entries = new LongAdder();
+
+        BloomFilter(long expectedInsertions, double fpp) {
+            long n = Math.max(1, expectedInsertions);
+            long m = (long) Math.ceil(-n * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+            int words = (int) Math.min(Integer.MAX_VALUE - 8, (m + 63) >>> 6);
+            this.bits = new AtomicLongArray(words);
+            this.bitSize = (long) words << 6;
+            this.hashFunctions = Math.max(1, (int) Math.round((double) bitSize / n * Math.log(2)));
+        }
+
+        void put(String key) {
+            long h1 = hash(key, 0xcbf29ce484222325L);
+            long h2 = hash(key, 0x84222325cbf29ce4L) | 1;
+            for (int i = 0; i < hashFunctions; i++) {
+                long index = Math.floorMod(h1 + i * h2, bitSize);
+                long mask = 1L << index;
+                bits.getAndAccumulate((int) (index >>> 6), mask, (a, b) -> a | b);
+            }
+            entries.increment();
+        }
+
+        boolean mightContain(String key) {
+            long h1 = hash(key, 0xcbf29ce484222325L);
+            long h2 = hash(key, 0x84222325cbf29ce4L) | 1;
+            for (int i = 0; i < hashFunctions; i++) {
+                long index = Math.floorMod(h1 + i * h2, bitSize);
+                if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) return false;
+            }
+            return true;
+        }
+
+        long bitSize() {
+            return bitSize;
+        }
+
+        long entries() {
+            return entries.sum();
+        }
+
+        double expectedFpp() {
+            return Math.pow(1 - Math.exp(-(double) hashFunctions * entries() / bitSize), hashFunctions);
+        }
+
+        private static long hash(String key, long seed) {
+            long h = seed;
+            for (int i = 0; i < key.length(); i++) {
+                h = (h ^ key.charAt(i)) * 0x100000001b3L;
+            }
+            h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+            h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+            return h ^ (h >>> 33);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.boot1.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.boot1.repository.UserExportRow;
+import com.boot1.repository.UserRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Writes every user as one JSON object per line, {@code roles} flattened to names. Rows are streamed from
+ * the database in id order and written as they arrive, so memory does not grow with the table.
+ */
+@Slf4j
+@Service
+public class UserExportService {
+    private final UserRepository userRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public UserExportService(
+            UserRepository userRepository, ObjectMapper objectMapper, PlatformTransactionManager transactionManager) {
+        this.userRepository = userRepository;
+        this.objectMapper = objectMapper;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /** Checked here, on the request thread; the returned body runs later on an async one. */
+    @PreAuthorize("hasRole('ADMIN')")
+    public StreamingResponseBody exportUsers() {
+        return this::writeUsers;
+    }
+
+    public void writeUsers(OutputStream out) {
+        long start = System.nanoTime();
+        long users = readOnlyTransaction.execute(status -> {
+            try (Stream<UserExportRow> rows = userRepository.streamForExport();
+                    JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+                json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                json.setPrettyPrinter(new MinimalPrettyPrinter(""));
+                return write(rows, json);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        log.info(
+                "Exported {} users in {} ms",
+                users,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    // rows of one user are adjacent (ordered by id), so each user is closed when the next one starts
+    private static long write(Stream<UserExportRow> rows, JsonGenerator json) throws IOException {
+        long users = 0;
+        String current = null;
+        for (var iterator = rows.iterator(); iterator.hasNext(); ) {
+            UserExportRow row = iterator.next();
+            if (!row.id().equals(current)) {
+                if (current != null) endUser(json);
+                current = row.id();
+                users++;
+                json.writeStartObject();
+                json.writeStringField("id", row.id());
+                json.writeStringField("username", row.username());
+                json.writeStringField("firstName", row.firstName());
+                json.writeStringField("lastName", row.lastName());
+                json.writeStringField("dob", row.dob() == null ? null : row.dob().toString());
+                json.writeStringField("email", row.email());
+                json.writeArrayFieldStart("roles");
+            }
+            if (row.role() != null) json.writeString(row.role());
+        }
+        if (current != null) endUser(json);
+        return users;
+    }
+
+    private static void endUser(JsonGenerator json) throws IOException {
+        json.writeEndArray();
+        json.writeEndObject();
+        json.writeRaw('\n');
+    }
+}
@@ -0,0 +1,441 @@
+package com.boot1.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.boot1.dto.request.UserCreationRequest;
+import com.boot1.dto.response.UserImportError;
+import com.boot1.dto.response.UserImportResponse;
+import com.boot1.enums.RoleName;
+import com.boot1.exception.ApiException;
+import com.boot1.exception.ErrorCode;
+import com.boot1.repository.RoleRepository;
+import com.boot1.repository.UserRepository;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.exc.StreamReadException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Creates users in bulk from a JSON array or a CSV file with a header row. The input is read as a stream and
+ * handled a chunk at a time: rows are validated like {@code /users/create}, taken usernames are found with one
+ * query per chunk, passwords are hashed in parallel and the chunk is inserted with JDBC batches in its own
+ * transaction. A bad row is reported and skipped; it never rolls back the rest of the load.
+ *
+ * <p>Hashing has its own bounded pool, half the cores by default, so an import leaves room for logins on
+ * {@link PasswordHashingService}. When its queue is full the importing thread hashes too, which holds back
+ * reading. On MySQL the batches only become multi-row inserts with {@code rewriteBatchedStatements=true} on
+ * the JDBC URL.
+ */
+@Slf4j
+@Service
+public class UserImportService {
+    private static final String INSERT_USER = "insert into `user`"
+            + " (id, username, password, first_name, last_name, dob, email) values (?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_ROLE = "insert into user_roles (user_id, role_name) values (?, ?)";
+    // CSV header names, compared lower case without underscores so first_name works too
+    private static final List<String> COLUMNS =
+            List.of("username", "password", "firstname", "lastname", "dob", "email");
+
+    private final UserRepository userRepository;
+    private final RoleRepository roleRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final PasswordEncoder passwordEncoder;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final ThreadPoolExecutor hashingExecutor;
+    private final int chunkSize;
+    private final int maxErrors;
+
+    private final Timer hashing;
+    private final Counter created;
+    private final Counter failed;
+
+    public UserImportService(
+            UserRepository userRepository,
+            RoleRepository roleRepository,
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            PasswordEncoder passwordEncoder,
+            Validator validator,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${app.user-import.chunk-size:500}") int chunkSize,
+            @Value("${app.user-import.max-errors:1000}") int maxErrors,
+            @Value("${app.user-import.hashing-threads:0}") int hashingThreads) {
+        this.userRepository = userRepository;
+        this.roleRepository = roleRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.passwordEncoder = passwordEncoder;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+        this.maxErrors = maxErrors;
+        int poolSize = hashingThreads > 0
+                ? hashingThreads
+                : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        this.hashingExecutor = new ThreadPoolExecutor(
+                poolSize,
+                poolSize,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(poolSize * 2),
+                new CustomizableThreadFactory("user-import-hash-"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+
+        this.hashing = Timer.builder("auth.password.hashing")
+                .tag("operation", "import")
+                .register(meterRegistry);
+        this.created = Counter.builder("users.import.rows")
+                .tag("result", "created")
+                .register(meterRegistry);
+        this.failed = Counter.builder("users.import.rows")
+                .tag("result", "failed")
+                .register(meterRegistry);
+    }
+
+    /** A JSON array of {@code /users/create} bodies. Reading stops at the first syntax error. */
+    @PreAuthorize("hasRole('ADMIN')")
+    public UserImportResponse importJson(InputStream in) {
+        Load load = new Load();
+        try (JsonParser parser = objectMapper.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) throw new ApiException(ErrorCode.INVALID_IMPORT_FILE);
+            try {
+                for (JsonToken token = parser.nextToken(); token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+                    if (token == null) throw new JsonParseException(parser, "Unexpected end of input");
+                    JsonNode node = parser.readValueAsTree();
+                    load.received++;
+                    try {
+                        load.accept(load.received, objectMapper.treeToValue(node, UserCreationRequest.class));
+                    } catch (JsonProcessingException | IllegalArgumentException e) {
+                        load.reject(load.received, node.path("username").asText(null), ErrorCode.INVALID_IMPORT_ROW);
+                    }
+                }
+            } catch (StreamReadException e) {
+                // the rest of the input cannot be split into rows, keep what was read so far
+                load.reject(++load.received, null, ErrorCode.INVALID_IMPORT_FILE);
+            }
+        } catch (StreamReadException e) {
+            throw new ApiException(ErrorCode.INVALID_IMPORT_FILE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return load.finish();
+    }
+
+    /** UTF-8 CSV whose header names the columns: username, password, firstName, lastName, dob, email. */
+    @PreAuthorize("hasRole('ADMIN')")
+    public UserImportResponse importCsv(InputStream in) {
+        Load load = new Load();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            int[] columns = columnsOf(readRecord(reader));
+            for (List<String> record = readRecord(reader); record != null; record = readRecord(reader)) {
+                if (record.size() == 1 && record.getFirst().isBlank()) continue;
+                load.received++;
+                try {
+                    load.accept(load.received, toRequest(record, columns));
+                } catch (DateTimeParseException e) {
+                    load.reject(load.received, field(record, columns[0]), ErrorCode.INVALID_IMPORT_ROW);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return load.finish();
+    }
+
+    private static int[] columnsOf(List<String> header) {
+        if (header == null) throw new ApiException(ErrorCode.INVALID_IMPORT_FILE);
+        int[] columns = new int[COLUMNS.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = -1;
+        }
+        for (int i = 0; i < header.size(); i++) {
+            String name = header.get(i).replace("\uFEFF", "").replace("_", "").trim().toLowerCase(Locale.ROOT);
+            int column = COLUMNS.indexOf(name);
+            if (column >= 0) columns[column] = i;
+        }
+        if (columns[0] < 0) throw new ApiException(ErrorCode.INVALID_IMPORT_FILE);
+        return columns;
+    }
+
+    private static UserCreationRequest toRequest(List<String> record, int[] columns) {
+        String dob = field(record, columns[4]);
+        return UserCreationRequest.builder()
+                .username(field(record, columns[0]))
+                .password(field(record, columns[1]))
+                .firstName(field(record, columns[2]))
+                .lastName(field(record, columns[3]))
+                .dob(dob == null || dob.isBlank() ? null : LocalDate.parse(dob.trim()))
+                .email(field(record, columns[5]))
+                .build();
+    }
+
+    private static String field(List<String> record, int column) {
+        return column < 0 || column >= record.size() ? null : record.get(column);
+    }
+
+    /**
+     * The next RFC 4180 record, or {@code null} at the end of the input. Quoted fields may hold commas, line
+     * breaks and doubled quotes.
+     */
+    static List<String> readRecord(Reader in) throws IOException {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean read = false;
+        for (int c = in.read(); c != -1; c = in.read()) {
+            read = true;
+            if (quoted) {
+                if (c != '"') {
+                    field.append((char) c);
+                    continue;
+                }
+                in.mark(1);
+                if (in.read() == '"') {
+                    field.append('"');
+                } else {
+                    quoted = false;
+                    in.reset();
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                fields.add(field.toString());
+                return fields;
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+        }
+        if (!read) return null;
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private String hash(String rawPassword) {
+        long start = System.nanoTime();
+        try {
+            return passwordEncoder.encode(rawPassword);
+        } finally {
+            hashing.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static String await(Future<String> hash) {
+        try {
+            return hash.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ApiException(ErrorCode.PASSWORD_HASHING_BUSY);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) throw runtimeException;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void insert(List<Object[]> users, List<Object[]> roles) {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(INSERT_USER, users);
+            jdbcTemplate.batchUpdate(INSERT_ROLE, roles);
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        hashingExecutor.shutdown();
+    }
+
+    private record Row(long number, UserCreationRequest request) {}
+
+    /** State of one import: the chunk being filled and the errors not yet published. */
+    private class Load {
+        final long start = System.nanoTime();
+        final String role = roleRepository
+                .findByName(RoleName.USER.name())
+                .orElseThrow(() -> new ApiException(ErrorCode.ROLE_NOT_FOUND))
+                .getName();
+        final List<UserImportError> errors = new ArrayList<>();
+        List<Row> pending = new ArrayList<>();
+        List<UserImportError> pendingErrors = new ArrayList<>();
+        long received;
+        long createdRows;
+        long failedRows;
+
+        void accept(long row, UserCreationRequest request) {
+            if (request == null || request.getUsername() == null || request.getPassword() == null) {
+                reject(row, request == null ? null : request.getUsername(), ErrorCode.INVALID_IMPORT_ROW);
+                return;
+            }
+            var violation = validator.validate(request).stream()
+                    .min(Comparator.comparing(v -> v.getPropertyPath().toString()));
+            if (violation.isPresent()) {
+                reject(row, request.getUsername(), violation.get());
+                return;
+            }
+            pending.add(new Row(row, request));
+            if (pending.size() >= chunkSize) flush();
+        }
+
+        void reject(long row, String username, ErrorCode errorCode) {
+            reject(row, username, errorCode, errorCode.getMsg());
+        }
+
+        // same code and message as /users/create answers with for this violation
+        void reject(long row, String username, ConstraintViolation<UserCreationRequest> violation) {
+            ErrorCode errorCode;
+            try {
+                errorCode = ErrorCode.valueOf(violation.getMessageTemplate());
+            } catch (IllegalArgumentException e) {
+                errorCode = ErrorCode.INVALID_KEY;
+            }
+            String msg = errorCode.getMsg();
+            for (Map.Entry<String, Object> attribute :
+                    violation.getConstraintDescriptor().getAttributes().entrySet()) {
+                msg = msg.replace("{" + attribute.getKey() + "}", String.valueOf(attribute.getValue()));
+            }
+            reject(row, username, errorCode, msg);
+        }
+
+        void reject(long row, String username, ErrorCode errorCode, String msg) {
+            failedRows++;
+            failed.increment();
+            pendingErrors.add(UserImportError.builder()
+                    .row(row)
+                    .username(username)
+                    .code(errorCode.getCode())
+                    .msg(msg)
+                    .build());
+        }
+
+        void flush() {
+            List<Row> rows = pending;
+            pending = new ArrayList<>();
+            if (!rows.isEmpty()) insertChunk(rows);
+            pendingErrors.sort(Comparator.comparingLong(UserImportError::getRow));
+            for (UserImportError error : pendingErrors) {
+                if (errors.size() >= maxErrors) break;
+                errors.add(error);
+            }
+            pendingErrors = new ArrayList<>();
+        }
+
+        private void insertChunk(List<Row> rows) {
+            // the username column is case-insensitive in MySQL, so duplicates are too
+            Set<String> taken = new HashSet<>();
+            for (String username : userRepository.findUsernamesIn(
+                    rows.stream().map(row -> row.request().getUsername()).toList())) {
+                taken.add(username.toLowerCase(Locale.ROOT));
+            }
+            List<Row> accepted = new ArrayList<>(rows.size());
+            List<Future<String>> hashes = new ArrayList<>(rows.size());
+            for (Row row : rows) {
+                if (!taken.add(row.request().getUsername().toLowerCase(Locale.ROOT))) {
+                    reject(row.number(), row.request().getUsername(), ErrorCode.USERNAME_EXISTS);
+                    continue;
+                }
+                accepted.add(row);
+                hashes.add(hashingExecutor.submit(() -> hash(row.request().getPassword())));
+            }
+            List<Object[]> users = new ArrayList<>(accepted.size());
+            List<Object[]> roles = new ArrayList<>(accepted.size());
+            for (int i = 0; i < accepted.size(); i++) {
+                UserCreationRequest request = accepted.get(i).request();
+                String id = UUID.randomUUID().toString();
+                users.add(new Object[] {
+                    id,
+                    request.getUsername(),
+                    await(hashes.get(i)),
+                    request.getFirstName(),
+                    request.getLastName(),
+                    request.getDob(),
+                    request.getEmail()
+                });
+                roles.add(new Object[] {id, role});
+            }
+            if (users.isEmpty()) return;
+            try {
+                insert(users, roles);
+                count(users.size());
+            } catch (DataIntegrityViolationException e) {
+                // a name was taken since the lookup; insert one by one to find out which
+                for (int i = 0; i < users.size(); i++) {
+                    try {
+                        insert(List.<Object[]>of(users.get(i)), List.<Object[]>of(roles.get(i)));
+                        count(1);
+                    } catch (DataIntegrityViolationException duplicate) {
+                        Row row = accepted.get(i);
+                        reject(row.number(), row.request().getUsername(), ErrorCode.USER_EXISTS);
+                    }
+                }
+            }
+        }
+
+        private void count(int rows) {
+            createdRows += rows;
+            created.increment(rows);
+        }
+
+        UserImportResponse finish() {
+            flush();
+            log.info(
+                    "Imported {} of {} users, {} rejected, {} ms",
+                    createdRows,
+                    received,
+                    failedRows,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return UserImportResponse.builder()
+                    .received(received)
+                    .created(createdRows)
+                    .failed(failedRows)
+                    .errors(errors)
+                    .build();
+        }
+    }
+}
@@ -3,19 +3,19 @@ package com.boot1.service;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.springframework.dao.DataIntegrityViolationException;
-import org.springframework.security.access.prepost.PostAuthorize;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
+import com.boot1.Entities.Role;
 import com.boot1.Entities.User;
 import com.boot1.dto.request.UserCreationRequest;
 import com.boot1.dto.request.UserUpdateRequest;
+import com.boot1.dto.response.PageResponse;
 import com.boot1.dto.response.UserResponse;
 import com.boot1.enums.RoleName;
 import com.boot1.exception.ApiException;
@@ -32,20 +32,24 @@ import lombok.extern.slf4j.Slf4j;
 @Service
 @RequiredArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
-@EnableMethodSecurity
 @Slf4j
 public class UserService {
+    // backed by the unique username index; email is nullable, so it cannot be a keyset sort key
+    private static final List<String> SORT_KEYS = List.of("username");
+
     UserRepository userRepository;
     RoleRepository roleRepository;
     UserMapper userMapper;
-    PasswordEncoder passwordEncoder;
+    PasswordHashingService passwordHashingService;
+    TokenEpochService tokenEpochService;
+    KeysetPaginator keysetPaginator;
 
     public UserResponse createUser(UserCreationRequest request) {
         if (userRepository.existsByUsername(request.getUsername())) {
             throw new ApiException(ErrorCode.USERNAME_EXISTS);
         }
         User user = userMapper.toUser(request);
-        user.setPassword(passwordEncoder.encode(request.getPassword()));
+        user.setPassword(passwordHashingService.encode(request.getPassword()));
         var role = roleRepository
                 .findByName(RoleName.USER.name())
                 .orElseThrow(() -> new ApiException(ErrorCode.ROLE_NOT_FOUND));
@@ -61,9 +65,12 @@ public class UserService {
         return userMapper.toUserResponse(user);
     }
 
-    @PostAuthorize("returnObject.username == authentication.name")
+    // owner only; the check is part of the query, so someone else's id loads nothing and reads as missing
     public UserResponse findUserById(String id) {
-        var user = userRepository.findById(id).orElseThrow(() -> new ApiException(ErrorCode.USER_NOT_EXISTS));
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        var user = userRepository
+                .findByIdAndUsername(id, auth.getName())
+                .orElseThrow(() -> new ApiException(ErrorCode.USER_NOT_EXISTS));
         return userMapper.toUserResponse(user);
     }
 
@@ -72,6 +79,19 @@ public class UserService {
         return userRepository.findAll().stream().map(userMapper::toUserResponse).toList();
     }
 
+    @PreAuthorize("hasRole('ADMIN')")
+    public PageResponse<UserResponse> getUsersPage(String cursor, Integer size, String sort, String direction) {
+        return keysetPaginator.page(
+                cursor,
+                size,
+                sort,
+                direction,
+                SORT_KEYS,
+                "id",
+                userRepository::findAllBy,
+                userMapper::toUserResponse);
+    }
+
     public UserResponse getMyProfile() {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
         var user = userRepository
@@ -117,17 +137,28 @@ public class UserService {
     @PreAuthorize("hasRole('ADMIN')")
     public UserResponse updateUser(String id, UserUpdateRequest request) {
         var user = userRepository.findById(id).orElseThrow(() -> new ApiException(ErrorCode.USER_NOT_EXISTS));
-        if (request.getPassword() != null && !request.getPassword().isBlank()) {
-            user.setPassword(passwordEncoder.encode(request.getPassword()));
+        boolean passwordChanged = request.getPassword() != null && !request.getPassword().isBlank();
+        if (passwordChanged) {
+            user.setPassword(passwordHashingService.encode(request.getPassword()));
         }
+        Set<String> rolesBefore = roleNames(user.getRoles());
         userMapper.updateUser(user, request);
         user.setRoles(roleRepository.findByNameIn(request.getRoles()));
         User ans = userRepository.save(user);
+        // tokens carry the old scope and permissions, so they have to go
+        if (passwordChanged || !rolesBefore.equals(roleNames(ans.getRoles()))) {
+            tokenEpochService.bump(ans.getUsername());
+        }
         return userMapper.toUserResponse(ans);
     }
 
     @PreAuthorize("hasRole('ADMIN') or #id == authentication.principal.id")
     public void deleteUser(String id) {
+        userRepository.findById(id).ifPresent(user -> tokenEpochService.bump(user.getUsername()));
         userRepository.deleteById(id);
     }
+
+    private static Set<String> roleNames(Set<Role> roles) {
+        return roles == null ? Set.of() : roles.stream().map(Role::getName).collect(Collectors.toSet());
+    }
 }
@@ -0,0 +1,103 @@
+package com.boot1.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Decoded {@link Jwt}s keyed by the digest of the raw token, so a client that keeps sending the same bearer
+ * token skips parsing and HMAC verification. Entries live until the token's {@code exp} and are dropped as
+ * soon as their JTI is revoked or their user's token epoch moves on this instance; changes made on other
+ * instances are caught by the checks the caller repeats on every hit.
+ */
+@Service
+public class VerifiedTokenCache {
+    private final Cache<TokenDigest, Jwt> cache;
+    private final Map<String, TokenDigest> digestsByJti = new ConcurrentHashMap<>();
+    private final AtomicLong revocations = new AtomicLong();
+
+    public VerifiedTokenCache(
+            MeterRegistry meterRegistry,
+            @Value("${jwt.verified-token-cache.maximum-size:10000}") long maximumSize) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<TokenDigest, Jwt>() {
+                    @Override
+                    public long expireAfterCreate(TokenDigest key, Jwt jwt, long currentTime) {
+                        return Duration.between(Instant.now(), jwt.getExpiresAt()).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(TokenDigest key, Jwt jwt, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(TokenDigest key, Jwt jwt, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .removalListener((TokenDigest digest, Jwt jwt, RemovalCause cause) -> {
+                    if (cause != RemovalCause.REPLACED && jwt != null && jwt.getId() != null) {
+                        digestsByJti.remove(jwt.getId(), digest);
+                    }
+                })
+                .executor(Runnable::run)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "auth.verified-tokens");
+        Gauge.builder("auth.verified-tokens.hit.ratio", cache, c -> c.stats().hitRate())
+                .register(meterRegistry);
+    }
+
+    public Jwt get(TokenDigest digest) {
+        return cache.getIfPresent(digest);
+    }
+
+    /**
+     * Marks the start of a verification. A token verified while a revocation happened is not cached, because
+     * it may have passed the revocation check just before its JTI was revoked.
+     */
+    public long stamp() {
+        return revocations.get();
+    }
+
+    public void put(TokenDigest digest, Jwt jwt, long stamp) {
+        Instant expiresAt = jwt.getExpiresAt();
+        if (expiresAt == null || !expiresAt.isAfter(Instant.now())) return;
+        if (jwt.getId() != null) digestsByJti.put(jwt.getId(), digest);
+        cache.put(digest, jwt);
+        if (revocations.get() != stamp) cache.invalidate(digest);
+    }
+
+    public void invalidate(TokenDigest digest) {
+        cache.invalidate(digest);
+    }
+
+    public void invalidateJti(String jti) {
+        revocations.incrementAndGet();
+        TokenDigest digest = digestsByJti.remove(jti);
+        if (digest != null) cache.invalidate(digest);
+    }
+
+    /** Drops every cached token of a user. Scans the cache, which is fine for the rare epoch bumps that call it. */
+    public void invalidateSubject(String subject) {
+        revocations.incrementAndGet();
+        cache.asMap().values().removeIf(jwt -> subject.equals(jwt.getSubject()));
+    }
+}
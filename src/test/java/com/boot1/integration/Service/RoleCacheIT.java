@@ -0,0 +1,155 @@
+package com.boot1.integration.Service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import jakarta.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.boot1.Entities.Permission;
+import com.boot1.Entities.Role;
+import com.boot1.dto.request.PermissionRequest;
+import com.boot1.repository.PermissionRepository;
+import com.boot1.repository.RoleRepository;
+import com.boot1.service.PermissionDictionary;
+import com.boot1.service.PermissionService;
+import com.boot1.service.RoleService;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Roles and permissions sit in the second-level cache; writes must show on the next read, and grants written by
+ * another instance, simulated here with plain SQL, must not be hidden by it.
+ */
+@SpringBootTest
+@TestPropertySource(
+        properties = {
+            "spring.datasource.url=jdbc:h2:mem:role-cache-it;MODE=MYSQL;NON_KEYWORDS=USER",
+            "spring.jpa.hibernate.ddl-auto=create-drop",
+            "jwt.signerKey=tROJF2gMEjMrlQmO2FqUWZc1Aj75dTZACeqA7uOtzJ82NEIMEVd4HNMj02orBqhM",
+            "jwt.valid-duration=7200",
+            "jwt.refreshable-duration=72000",
+            "jwt.revocation-queue.log-dir=",
+            "app.default-admin.username=admin",
+            "app.default-admin.password=admin"
+        })
+@FieldDefaults(level = AccessLevel.PRIVATE)
+class RoleCacheIT {
+    @Autowired
+    RoleService roleService;
+
+    @Autowired
+    PermissionService permissionService;
+
+    @Autowired
+    RoleRepository roleRepository;
+
+    @Autowired
+    PermissionRepository permissionRepository;
+
+    @Autowired
+    PermissionDictionary permissionDictionary;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    Statistics statistics;
+
+    @BeforeEach
+    void initData() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void addPermissionsToRole_afterCachedRead_nextReadHasNewGrant() {
+        // given
+        Role role = saveRole("EDITOR", "POST_READ", "POST_WRITE");
+        grantsOf(role.getName());
+        long hits = statistics.getQueryCacheHitCount();
+        assertEquals(Set.of("POST_READ"), grantsOf(role.getName()));
+        assertTrue(statistics.getQueryCacheHitCount() > hits);
+        // when
+        roleService.addPermissionsToRole(role.getName(), List.of("POST_WRITE"));
+        // then
+        assertEquals(Set.of("POST_READ", "POST_WRITE"), grantsOf(role.getName()));
+    }
+
+    @Test
+    void grantWrittenElsewhere_afterCachedRead_nextReadHasIt() {
+        // given
+        Role role = saveRole("AUDITOR", "LOG_READ", "LOG_EXPORT");
+        assertEquals(Set.of("LOG_READ"), grantsOf(role.getName()));
+        // when
+        jdbcTemplate.update(
+                "insert into role_permissions (role_name, permission_name) values (?, ?)", role.getName(), "LOG_EXPORT");
+        // then
+        assertEquals(Set.of("LOG_READ", "LOG_EXPORT"), grantsOf(role.getName()));
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void createPermission_afterCachedList_nextListHasIt() {
+        // given
+        permissionRepository.findAll();
+        long hits = statistics.getQueryCacheHitCount();
+        permissionRepository.findAll();
+        assertTrue(statistics.getQueryCacheHitCount() > hits);
+        // when
+        permissionService.createPermission(PermissionRequest.builder()
+                .permissionName("INVOICE_READ")
+                .build());
+        // then
+        assertTrue(permissionRepository.findAll().stream().anyMatch(p -> p.getName().equals("INVOICE_READ")));
+    }
+
+    @Test
+    void dictionary_permissionWrittenElsewhere_encodedAfterCachedList() {
+        // given
+        permissionRepository.findAll();
+        permissionRepository.findAll();
+        // when
+        jdbcTemplate.update("insert into permission (name) values ('REPORT_SHARE')");
+        // then
+        assertNotNull(permissionDictionary.encode(List.of("REPORT_SHARE")));
+    }
+
+    private Role saveRole(String name, String granted, String other) {
+        Permission grantedPermission =
+                permissionRepository.save(Permission.builder().name(granted).build());
+        permissionRepository.save(Permission.builder().name(other).build());
+        return roleRepository.save(Role.builder()
+                .name(name)
+                .permissions(Set.of(grantedPermission))
+                .build());
+    }
+
+    // in a transaction of its own, as a request would with open-in-view
+    private Set<String> grantsOf(String roleName) {
+        return new TransactionTemplate(transactionManager)
+                .execute(status -> roleRepository.findByName(roleName).orElseThrow().getPermissions().stream()
+                        .map(Permission::getName)
+                        .collect(Collectors.toSet()));
+    }
+}
@@ -159,7 +159,7 @@ class UserServiceIT {
     @WithMockUser(username = "Test")
     void findUserById_validRequest_success() throws Exception {
         // given
-        when(userRepository.findById("sontaypham")).thenReturn(Optional.of(user));
+        when(userRepository.findByIdAndUsername("sontaypham", "Test")).thenReturn(Optional.of(user));
         when(userMapper.toUserResponse(user)).thenReturn(userResponse);
         // when then
         mockMvc.perform(get("/users/findById/sontaypham")).andExpect(status().isOk());
@@ -169,7 +169,7 @@ class UserServiceIT {
     @WithMockUser(username = "test")
     void findUserById_usernameNotEquals_fail() throws Exception {
         // given
-        when(userRepository.findById("sontaypham")).thenReturn(Optional.empty());
+        when(userRepository.findByIdAndUsername("sontaypham", "test")).thenReturn(Optional.empty());
         when(userMapper.toUserResponse(user)).thenReturn(userResponse);
         // when then
         mockMvc.perform(get("/users/findById/sontaypham")).andExpect(status().isNotFound());
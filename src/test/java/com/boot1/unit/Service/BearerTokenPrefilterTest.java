@@ -0,0 +1,65 @@
+package com.boot1.unit.Service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Date;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.boot1.service.BearerTokenPrefilter;
+import com.boot1.service.TokenCryptoService;
+import com.boot1.service.TokenDigest;
+import com.nimbusds.jwt.JWTClaimsSet;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class BearerTokenPrefilterTest {
+    BearerTokenPrefilter bearerTokenPrefilter;
+    String token;
+
+    @BeforeEach
+    void initData() {
+        TokenCryptoService tokenCryptoService = new TokenCryptoService(TokenCryptoServiceTest.SIGNER_KEY);
+        bearerTokenPrefilter =
+                new BearerTokenPrefilter(tokenCryptoService, new SimpleMeterRegistry(), 1024, 100, 60);
+        token = tokenCryptoService.sign(new JWTClaimsSet.Builder()
+                .subject("Test")
+                .issueTime(new Date())
+                .jwtID("jti")
+                .build());
+    }
+
+    @Test
+    void isWellFormed_signedToken_true() {
+        // when, then
+        assertTrue(bearerTokenPrefilter.isWellFormed(token));
+    }
+
+    @Test
+    void isWellFormed_malformedTokens_false() {
+        // given
+        String header = token.substring(0, token.indexOf('.'));
+        // when, then
+        assertFalse(bearerTokenPrefilter.isWellFormed(null));
+        assertFalse(bearerTokenPrefilter.isWellFormed("garbage"));
+        assertFalse(bearerTokenPrefilter.isWellFormed(token + ".extra"));
+        assertFalse(bearerTokenPrefilter.isWellFormed(header + "..sig"));
+        assertFalse(bearerTokenPrefilter.isWellFormed(header + ".payload."));
+        assertFalse(bearerTokenPrefilter.isWellFormed(token.replaceFirst("\\.", ".%")));
+        assertFalse(bearerTokenPrefilter.isWellFormed("eyJhbGciOiJub25lIn0" + token.substring(header.length())));
+        assertFalse(bearerTokenPrefilter.isWellFormed(token + "A".repeat(1024)));
+    }
+
+    @Test
+    void isKnownBad_afterMarkBad_true() {
+        // given
+        TokenDigest digest = TokenDigest.of(token);
+        // when
+        boolean before = bearerTokenPrefilter.isKnownBad(digest);
+        bearerTokenPrefilter.markBad(digest);
+        // then
+        assertFalse(before);
+        assertTrue(bearerTokenPrefilter.isKnownBad(digest));
+    }
+}
@@ -0,0 +1,88 @@
+package com.boot1.unit.Service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import com.boot1.configuration.CachingJwtAuthoritiesConverter;
+import com.boot1.service.PermissionDictionary;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class CachingJwtAuthoritiesConverterTest {
+    PermissionDictionary permissionDictionary;
+    CachingJwtAuthoritiesConverter converter;
+
+    @BeforeEach
+    void initData() {
+        permissionDictionary = mock(PermissionDictionary.class);
+        converter = new CachingJwtAuthoritiesConverter(permissionDictionary, new SimpleMeterRegistry(), 16);
+    }
+
+    @Test
+    void convert_sameClaims_sharedImmutableCollection() {
+        // given
+        Jwt first = jwt("alice", List.of("USER"), List.of("USER_READ"));
+        Jwt second = jwt("bob", List.of("USER"), List.of("USER_READ"));
+        // when
+        var authorities = converter.convert(first);
+        // then
+        assertEquals(
+                List.of(new SimpleGrantedAuthority("ROLE_USER"), new SimpleGrantedAuthority("USER_READ")), authorities);
+        assertSame(authorities, converter.convert(second));
+        assertThrows(
+                UnsupportedOperationException.class, () -> authorities.add(new SimpleGrantedAuthority("ROLE_ADMIN")));
+    }
+
+    @Test
+    void convert_differentPermissions_differentAuthoritiesSharingInstances() {
+        // given
+        var user = converter.convert(jwt("alice", List.of("USER"), List.of("USER_READ")));
+        // when
+        var admin = converter.convert(jwt("root", List.of("ADMIN", "USER"), List.of("USER_READ", "USER_DELETE")));
+        // then
+        assertEquals(4, admin.size());
+        assertSame(user.iterator().next(), admin.stream().skip(1).findFirst().orElseThrow());
+    }
+
+    @Test
+    void convert_unknownDictionaryVersion_notCachedUntilResolved() {
+        // given
+        Jwt jwt = Jwt.withTokenValue("alice")
+                .header("alg", "HS512")
+                .claim("scope", List.of("USER"))
+                .claim(PermissionDictionary.VERSION_CLAIM, 7)
+                .claim(PermissionDictionary.BITS_CLAIM, "AQ")
+                .build();
+        when(permissionDictionary.decode(7, "AQ"))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(Set.of(new SimpleGrantedAuthority("USER_READ"))));
+        // when
+        var unresolved = converter.convert(jwt);
+        var resolved = converter.convert(jwt);
+        // then
+        assertEquals(List.of(new SimpleGrantedAuthority("ROLE_USER")), unresolved);
+        assertEquals(
+                List.of(new SimpleGrantedAuthority("ROLE_USER"), new SimpleGrantedAuthority("USER_READ")), resolved);
+        assertSame(resolved, converter.convert(jwt));
+        verify(permissionDictionary, times(2)).decode(7, "AQ");
+    }
+
+    private static Jwt jwt(String subject, List<String> scope, List<String> permission) {
+        return Jwt.withTokenValue(subject)
+                .header("alg", "HS512")
+                .subject(subject)
+                .claim("scope", new ArrayList<>(scope))
+                .claim("permission", new ArrayList<>(permission))
+                .build();
+    }
+}
@@ -0,0 +1,67 @@
+package com.boot1.unit.Service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.authorization.AuthorityAuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationResult;
+import org.springframework.security.authorization.method.PreAuthorizeAuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.util.SimpleMethodInvocation;
+
+import com.boot1.configuration.CompiledPreAuthorizeManager;
+
+public class CompiledPreAuthorizeManagerTest {
+    CompiledPreAuthorizeManager manager;
+    Authentication admin;
+    Authentication user;
+
+    @BeforeEach
+    void initData() {
+        manager = new CompiledPreAuthorizeManager(new PreAuthorizeAuthorizationManager(), null);
+        admin = new TestingAuthenticationToken("admin", "", "ROLE_ADMIN");
+        user = new TestingAuthenticationToken("user", "", "ROLE_USER", "READ_DATA");
+    }
+
+    @Test
+    void authorize_roleExpression_compiledToAuthorityCheck() throws Exception {
+        // given
+        var invocation = invocation("adminOnly");
+        // when
+        AuthorizationResult forAdmin = manager.authorize(() -> admin, invocation);
+        AuthorizationResult forUser = manager.authorize(() -> user, invocation);
+        // then
+        assertInstanceOf(AuthorityAuthorizationDecision.class, forAdmin);
+        assertTrue(forAdmin.isGranted());
+        assertFalse(forUser.isGranted());
+        assertTrue(manager.authorize(() -> user, invocation("adminOrReader")).isGranted());
+    }
+
+    @Test
+    void authorize_otherExpression_evaluatedWithSpel() throws Exception {
+        // given
+        var invocation = new SimpleMethodInvocation(
+                new Secured(), Secured.class.getMethod("ownerOnly", String.class), "user");
+        // when, then
+        assertTrue(manager.authorize(() -> user, invocation).isGranted());
+        assertFalse(manager.authorize(() -> admin, invocation).isGranted());
+    }
+
+    private static SimpleMethodInvocation invocation(String method) throws Exception {
+        return new SimpleMethodInvocation(new Secured(), Secured.class.getMethod(method));
+    }
+
+    public static class Secured {
+        @PreAuthorize("hasRole('ADMIN')")
+        public void adminOnly() {}
+
+        @PreAuthorize("hasRole('ADMIN') or hasAuthority('READ_DATA')")
+        public void adminOrReader() {}
+
+        @PreAuthorize("#username == authentication.name")
+        public void ownerOnly(String username) {}
+    }
+}
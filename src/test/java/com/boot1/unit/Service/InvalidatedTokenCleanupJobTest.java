@@ -0,0 +1,72 @@
+package com.boot1.unit.Service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.sql.Timestamp;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import com.boot1.service.InvalidatedTokenCleanupJob;
+import com.boot1.service.TokenRevocationService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class InvalidatedTokenCleanupJobTest {
+    JdbcTemplate jdbcTemplate;
+    SimpleMeterRegistry meterRegistry;
+    TokenRevocationService tokenRevocationService;
+
+    @BeforeEach
+    void initData() {
+        jdbcTemplate = new JdbcTemplate(
+                new DriverManagerDataSource("jdbc:h2:mem:" + System.nanoTime() + ";DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("create table invalidated_token"
+                + " (id varchar(255) primary key, exp_time timestamp, exp_bucket integer, revoked_at timestamp)");
+        meterRegistry = new SimpleMeterRegistry();
+        tokenRevocationService = mock(TokenRevocationService.class);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 25; i++) {
+            // several rows share an exp_time, so the keyset has to fall back to the id
+            insert("expired-" + i, new Timestamp(now - 60_000 - (i / 4) * 1000L));
+        }
+        insert("live", new Timestamp(now + 60_000));
+    }
+
+    @Test
+    void cleanInvalidatedTokens_chunked_removesExpiredOnly() {
+        // given
+        var job = new InvalidatedTokenCleanupJob(
+                jdbcTemplate, tokenRevocationService, meterRegistry, "chunked", 10, 0, 3);
+        // when
+        job.cleanInvalidatedTokens();
+        // then
+        assertEquals(
+                "live", jdbcTemplate.queryForObject("select listagg(id) from invalidated_token", String.class));
+        assertEquals(25.0, meterRegistry.get("auth.revocation.cleanup.rows").counter().count());
+        assertEquals(0.0, meterRegistry.get("auth.revocation.cleanup.backlog").gauge().value());
+        verify(tokenRevocationService).rebuild();
+    }
+
+    @Test
+    void cleanInvalidatedTokens_partitionStrategyOnUnpartitionedTable_fallsBackToChunks() {
+        // given
+        var job = new InvalidatedTokenCleanupJob(
+                jdbcTemplate, tokenRevocationService, meterRegistry, "partition", 10, 0, 3);
+        // when
+        job.cleanInvalidatedTokens();
+        // then
+        assertEquals(1, jdbcTemplate.queryForObject("select count(*) from invalidated_token", Integer.class));
+    }
+
+    private void insert(String id, Timestamp expTime) {
+        jdbcTemplate.update(
+                "insert into invalidated_token (id, exp_time, exp_bucket) values (?, ?, ?)",
+                id,
+                expTime,
+                (int) (expTime.getTime() / 3_600_000));
+    }
+}
@@ -0,0 +1,81 @@
+package com.boot1.unit.Service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.boot1.service.LoginAttemptLimiter;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class LoginAttemptLimiterTest {
+    SimpleMeterRegistry meterRegistry;
+    LoginAttemptLimiter loginAttemptLimiter;
+
+    @BeforeEach
+    void initData() {
+        meterRegistry = new SimpleMeterRegistry();
+        loginAttemptLimiter = new LoginAttemptLimiter(meterRegistry, 3, 60_000, 10, 60_000, 1_000);
+    }
+
+    @Test
+    void tryAcquire_usernameOverCapacity_rejected() {
+        for (int i = 0; i < 3; i++) {
+            assertTrue(loginAttemptLimiter.tryAcquire("Test", "10.0.0." + i));
+        }
+        // usernames are matched case-insensitively, like the username column
+        assertFalse(loginAttemptLimiter.tryAcquire("TEST", "10.0.0.9"));
+        assertTrue(loginAttemptLimiter.tryAcquire("Other", "10.0.0.9"));
+        assertEquals(
+                1.0,
+                meterRegistry
+                        .get("auth.login.rejected")
+                        .tag("key", "username")
+                        .counter()
+                        .count());
+    }
+
+    @Test
+    void tryAcquire_ipOverCapacity_rejected() {
+        for (int i = 0; i < 10; i++) {
+            assertTrue(loginAttemptLimiter.tryAcquire("user" + i, "10.0.0.1"));
+        }
+        assertFalse(loginAttemptLimiter.tryAcquire("user10", "10.0.0.1"));
+        assertTrue(loginAttemptLimiter.tryAcquire("user10", "10.0.0.2"));
+    }
+
+    @Test
+    void tryAcquire_manyKeys_memoryBounded() {
+        for (int i = 0; i < 10_000; i++) {
+            loginAttemptLimiter.tryAcquire("user" + i, null);
+        }
+        assertTrue(meterRegistry
+                        .get("auth.login.limiter.keys")
+                        .tag("key", "username")
+                        .gauge()
+                        .value()
+                <= 1_000);
+    }
+
+    @Test
+    void tryAcquire_freshKeysWhenFull_doNotResetLimitedKey() {
+        // given
+        for (int i = 0; i < 3; i++) {
+            loginAttemptLimiter.tryAcquire("victim", null);
+        }
+        assertFalse(loginAttemptLimiter.tryAcquire("victim", null));
+        // when
+        for (int i = 0; i < 2_000; i++) {
+            loginAttemptLimiter.tryAcquire("spray" + i, null);
+        }
+        // then
+        assertFalse(loginAttemptLimiter.tryAcquire("victim", null));
+        assertTrue(meterRegistry
+                        .get("auth.login.limiter.full")
+                        .tag("key", "username")
+                        .counter()
+                        .count()
+                > 0);
+    }
+}
@@ -0,0 +1,131 @@
+package com.boot1.unit.Service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import com.boot1.Entities.Permission;
+import com.boot1.Entities.PermissionDictionaryVersion;
+import com.boot1.repository.PermissionDictionaryVersionRepository;
+import com.boot1.repository.PermissionRepository;
+import com.boot1.service.PermissionDictionary;
+
+public class PermissionDictionaryTest {
+    PermissionRepository permissionRepository;
+    PermissionDictionaryVersionRepository versionRepository;
+    PermissionDictionary permissionDictionary;
+    List<Permission> permissions;
+    Map<Integer, PermissionDictionaryVersion> storedVersions;
+
+    @BeforeEach
+    void initData() {
+        permissions = new ArrayList<>(List.of(
+                Permission.builder().name("USER_READ").build(),
+                Permission.builder().name("REPORT_EXPORT").build()));
+        permissionRepository = mock(PermissionRepository.class);
+        when(permissionRepository.findAllNames())
+                .thenAnswer(invocation -> permissions.stream().map(Permission::getName).toList());
+        storedVersions = new HashMap<>();
+        versionRepository = mock(PermissionDictionaryVersionRepository.class);
+        when(versionRepository.findById(any()))
+                .thenAnswer(invocation -> Optional.ofNullable(storedVersions.get(invocation.<Integer>getArgument(0))));
+        when(versionRepository.insert(anyInt(), any())).thenAnswer(invocation -> {
+            int version = invocation.getArgument(0);
+            if (storedVersions.containsKey(version)) throw new DataIntegrityViolationException("duplicate");
+            storedVersions.put(version, new PermissionDictionaryVersion(version, invocation.getArgument(1)));
+            return 1;
+        });
+        permissionDictionary = new PermissionDictionary(permissionRepository, versionRepository);
+        permissionDictionary.refresh();
+    }
+
+    @Test
+    void encode_knownPermissions_roundTrip() {
+        // when
+        var encoded = permissionDictionary.encode(List.of("USER_READ", "REPORT_EXPORT"));
+        // then
+        assertEquals(
+                Optional.of(Set.of(
+                        new SimpleGrantedAuthority("USER_READ"), new SimpleGrantedAuthority("REPORT_EXPORT"))),
+                permissionDictionary.decode(encoded.version(), encoded.bits()));
+    }
+
+    @Test
+    void encode_permissionAddedElsewhere_reloadsAndKeepsOldVersion() {
+        // given
+        var before = permissionDictionary.encode(List.of("REPORT_EXPORT"));
+        permissions.add(Permission.builder().name("AUDIT_READ").build());
+        // when
+        var after = permissionDictionary.encode(List.of("AUDIT_READ"));
+        // then
+        assertNotEquals(before.version(), after.version());
+        assertEquals(
+                Optional.of(Set.of(new SimpleGrantedAuthority("REPORT_EXPORT"))),
+                permissionDictionary.decode(before.version(), before.bits()));
+        assertEquals(
+                Optional.of(Set.of(new SimpleGrantedAuthority("AUDIT_READ"))),
+                permissionDictionary.decode(after.version(), after.bits()));
+    }
+
+    @Test
+    void decode_versionMintedBeforeRestart_loadedFromTable() {
+        // given
+        var before = permissionDictionary.encode(List.of("REPORT_EXPORT"));
+        permissions.add(Permission.builder().name("AUDIT_READ").build());
+        PermissionDictionary restarted = new PermissionDictionary(permissionRepository, versionRepository);
+        restarted.refresh();
+        // when
+        var authorities = restarted.decode(before.version(), before.bits());
+        // then
+        assertEquals(Optional.of(Set.of(new SimpleGrantedAuthority("REPORT_EXPORT"))), authorities);
+        assertEquals(2, storedVersions.size());
+    }
+
+    @Test
+    void encode_versionNotStored_noCompactForm() {
+        // given
+        when(versionRepository.findById(any())).thenThrow(new DataAccessResourceFailureException("down"));
+        PermissionDictionary offline = new PermissionDictionary(permissionRepository, versionRepository);
+        // when then
+        assertNull(offline.encode(List.of("REPORT_EXPORT")));
+    }
+
+    @Test
+    void encode_checksumTakenByOtherNames_usesNextVersion() {
+        // given
+        var expected = permissionDictionary.encode(List.of("REPORT_EXPORT"));
+        storedVersions.clear();
+        storedVersions.put(expected.version(), new PermissionDictionaryVersion(expected.version(), "OTHER_NAME"));
+        PermissionDictionary colliding = new PermissionDictionary(permissionRepository, versionRepository);
+        colliding.refresh();
+        // when
+        var encoded = colliding.encode(List.of("REPORT_EXPORT"));
+        // then
+        assertEquals(expected.version() + 1, encoded.version());
+        assertEquals(
+                Optional.of(Set.of(new SimpleGrantedAuthority("REPORT_EXPORT"))),
+                colliding.decode(encoded.version(), encoded.bits()));
+        assertEquals(
+                Optional.of(Set.of(new SimpleGrantedAuthority("OTHER_NAME"))),
+                colliding.decode(expected.version(), "AQ"));
+    }
+
+    @Test
+    void decode_unknownVersion_unresolved() {
+        assertTrue(permissionDictionary.decode(42, "AQ").isEmpty());
+    }
+}
@@ -0,0 +1,106 @@
+package com.boot1.unit.Service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+import com.boot1.dto.request.AuthorizationCheck;
+import com.boot1.dto.request.AuthorizationRequest;
+import com.boot1.dto.response.AuthorizationDecision;
+import com.boot1.repository.RoleRepository;
+import com.boot1.service.PolicyDecisionService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class PolicyDecisionServiceTest {
+    RoleRepository roleRepository;
+    JwtDecoder jwtDecoder;
+    PolicyDecisionService policyDecisionService;
+
+    @BeforeEach
+    void initData() {
+        roleRepository = mock(RoleRepository.class);
+        jwtDecoder = mock(JwtDecoder.class);
+        policyDecisionService =
+                new PolicyDecisionService(roleRepository, jwtDecoder, new SimpleMeterRegistry(), 100, 100, 60);
+        Jwt jwt = Jwt.withTokenValue("user-token")
+                .header("alg", "HS512")
+                .subject("Test")
+                .jti("jti")
+                .claim("scope", "USER STAFF")
+                .expiresAt(Instant.now().plusSeconds(60))
+                .build();
+        when(jwtDecoder.decode("user-token")).thenReturn(jwt);
+        when(jwtDecoder.decode("bad-token")).thenThrow(new BadJwtException("invalid token"));
+        when(roleRepository.findAllGrants())
+                .thenReturn(List.of(new Object[] {"USER", "READ_DATA"}, new Object[] {"STAFF", null}));
+        policyDecisionService.refresh();
+    }
+
+    @Test
+    void authorize_checks_decidedInOrderFromRoleSnapshot() {
+        // when
+        var decisions = policyDecisionService.authorize(request(
+                check("user-token", "READ_DATA"),
+                check("user-token", "ROLE_STAFF"),
+                check("user-token", "DELETE_DATA"),
+                check("bad-token", "READ_DATA")));
+        // then
+        assertEquals(
+                List.of(true, true, false, false),
+                decisions.stream().map(AuthorizationDecision::isAllowed).toList());
+        verify(jwtDecoder, times(1)).decode("user-token");
+    }
+
+    @Test
+    void authorize_afterRolesChanged_usesNewPermissions() {
+        // given
+        assertFalse(policyDecisionService
+                .authorize(request(check("user-token", "DELETE_DATA")))
+                .get(0)
+                .isAllowed());
+        when(roleRepository.findAllGrants())
+                .thenReturn(List.of(new Object[] {"USER", "READ_DATA"}, new Object[] {"STAFF", "DELETE_DATA"}));
+        // when
+        policyDecisionService.rolesChanged();
+        // then
+        assertTrue(policyDecisionService
+                .authorize(request(check("user-token", "DELETE_DATA")))
+                .get(0)
+                .isAllowed());
+    }
+
+    @Test
+    void authorize_afterGrantWrittenElsewhere_usesItOnceRefreshed() {
+        // given
+        assertFalse(policyDecisionService
+                .authorize(request(check("user-token", "DELETE_DATA")))
+                .get(0)
+                .isAllowed());
+        when(roleRepository.findAllGrants())
+                .thenReturn(List.of(new Object[] {"USER", "READ_DATA"}, new Object[] {"USER", "DELETE_DATA"}));
+        // when
+        policyDecisionService.refresh();
+        // then
+        assertTrue(policyDecisionService
+                .authorize(request(check("user-token", "DELETE_DATA")))
+                .get(0)
+                .isAllowed());
+    }
+
+    private static AuthorizationRequest request(AuthorizationCheck... checks) {
+        return AuthorizationRequest.builder().checks(List.of(checks)).build();
+    }
+
+    private static AuthorizationCheck check(String token, String permission) {
+        return AuthorizationCheck.builder().token(token).permission(permission).build();
+    }
+}
@@ -0,0 +1,84 @@
+package com.boot1.unit.Service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.boot1.exception.ApiException;
+import com.boot1.exception.ErrorCode;
+import com.boot1.service.RefreshCoordinator;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class RefreshCoordinatorTest {
+    RefreshCoordinator refreshCoordinator;
+
+    @BeforeEach
+    void initData() {
+        refreshCoordinator = new RefreshCoordinator(new SimpleMeterRegistry(), 10, 5000);
+    }
+
+    @Test
+    void refresh_concurrentDuplicates_mintOnceAndShareToken() throws Exception {
+        // given
+        AtomicInteger mints = new AtomicInteger();
+        CountDownLatch minting = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<String>> results = new ArrayList<>();
+        // when
+        for (int i = 0; i < 8; i++) {
+            results.add(executor.submit(() -> refreshCoordinator.refresh("jti", () -> {
+                mints.incrementAndGet();
+                try {
+                    minting.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "new-token";
+            })));
+        }
+        Thread.sleep(100);
+        minting.countDown();
+        // then
+        for (Future<String> result : results) {
+            assertEquals("new-token", result.get());
+        }
+        assertEquals(1, mints.get());
+        assertEquals("new-token", refreshCoordinator.refresh("jti", () -> "another-token"));
+        executor.shutdown();
+    }
+
+    @Test
+    void refresh_alreadyRevoked_duplicatesRejectedWithoutMinting() {
+        // given
+        AtomicInteger mints = new AtomicInteger();
+        // when
+        assertThrows(ApiException.class, () -> refreshCoordinator.refresh("jti", () -> {
+            mints.incrementAndGet();
+            throw new ApiException(ErrorCode.UNAUTHENTICATED);
+        }));
+        // then
+        assertThrows(ApiException.class, () -> refreshCoordinator.refresh("jti", () -> {
+            mints.incrementAndGet();
+            return "new-token";
+        }));
+        assertEquals(1, mints.get());
+    }
+
+    @Test
+    void refresh_unexpectedFailure_retryAllowed() {
+        assertThrows(IllegalStateException.class, () -> refreshCoordinator.refresh("jti", () -> {
+            throw new IllegalStateException("database down");
+        }));
+        assertEquals("new-token", refreshCoordinator.refresh("jti", () -> "new-token"));
+    }
+}
@@ -0,0 +1,105 @@
+package com.boot1.unit.Service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import com.boot1.service.RevocationQueue;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class RevocationQueueTest {
+    @TempDir
+    Path logDir;
+
+    JdbcTemplate jdbcTemplate;
+    SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void initData() {
+        jdbcTemplate = new JdbcTemplate(
+                new DriverManagerDataSource("jdbc:h2:mem:" + System.nanoTime() + ";DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("create table invalidated_token"
+                + " (id varchar(255) primary key, exp_time timestamp, exp_bucket integer, revoked_at timestamp)");
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void flush_queuedRevocations_writtenOnceAndLogDeleted() throws Exception {
+        // given
+        RevocationQueue revocationQueue = newQueue();
+        Date exp = new Date(System.currentTimeMillis() + 60_000);
+        revocationQueue.enqueue("jti-1", exp);
+        revocationQueue.enqueue("jti-2", exp);
+        revocationQueue.enqueue("jti-1", exp);
+        assertTrue(revocationQueue.contains("jti-1"));
+        List<String> committed = new ArrayList<>();
+        // when
+        int flushed = revocationQueue.flush(committed::addAll);
+        // then
+        assertEquals(2, flushed);
+        assertEquals(2, committed.size());
+        assertFalse(revocationQueue.contains("jti-1"));
+        assertEquals(2, jdbcTemplate.queryForObject("select count(*) from invalidated_token", Integer.class));
+        assertEquals(1, segmentCount());
+    }
+
+    @Test
+    void new_relativeLogDir_rejected() {
+        assertThrows(
+                IllegalStateException.class,
+                () -> new RevocationQueue(jdbcTemplate, meterRegistry, true, "data/revocation-log", 500));
+    }
+
+    @Test
+    void replay_afterCrashBeforeFlush_revocationsRestored() throws Exception {
+        // given
+        Date exp = new Date(System.currentTimeMillis() + 60_000);
+        RevocationQueue crashed = newQueue();
+        crashed.enqueue("jti-1", exp);
+        jdbcTemplate.update("insert into invalidated_token (id, exp_time) values ('jti-2', ?)", exp);
+        crashed.enqueue("jti-2", exp);
+        // when
+        RevocationQueue restarted = newQueue();
+        // then
+        assertTrue(restarted.contains("jti-1"));
+        assertEquals(2, restarted.flush(ids -> {}));
+        assertEquals(2, jdbcTemplate.queryForObject("select count(*) from invalidated_token", Integer.class));
+    }
+
+    @Test
+    void flush_databaseDown_keepsQueue() throws Exception {
+        // given
+        RevocationQueue revocationQueue = newQueue();
+        revocationQueue.enqueue("jti-1", new Date());
+        jdbcTemplate.execute("drop table invalidated_token");
+        // when
+        int flushed = revocationQueue.flush(ids -> {});
+        // then
+        assertEquals(-1, flushed);
+        assertTrue(revocationQueue.contains("jti-1"));
+        assertEquals(1.0, meterRegistry.get("auth.revocation.flush.failures").counter().count());
+        assertEquals(1, newQueue().size());
+    }
+
+    private RevocationQueue newQueue() {
+        return new RevocationQueue(jdbcTemplate, meterRegistry, true, logDir.toString(), 500);
+    }
+
+    private long segmentCount() throws Exception {
+        try (Stream<Path> files = Files.list(logDir)) {
+            return files.count();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.boot1.unit.Service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.boot1.service.TokenCryptoService;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.MACSigner;
+import com.nimbusds.jose.crypto.MACVerifier;
+import com.nimbusds.jose.crypto.RSASSAVerifier;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+
+public class TokenCryptoServiceTest {
+    static final String SIGNER_KEY = "tROJF2gMEjMrlQmO2FqUWZc1Aj75dTZACeqA7uOtzJ82NEIMEVd4HNMj02orBqhM";
+
+    TokenCryptoService tokenCryptoService;
+    JWTClaimsSet claimsSet;
+
+    @BeforeEach
+    void initData() {
+        tokenCryptoService = new TokenCryptoService(SIGNER_KEY);
+        claimsSet = new JWTClaimsSet.Builder()
+                .subject("Test")
+                .issuer("sontaypham")
+                .issueTime(new Date())
+                .jwtID("jti")
+                .build();
+    }
+
+    @Test
+    void sign_validClaims_verifiableByNimbus() throws Exception {
+        // when
+        SignedJWT signedJWT = SignedJWT.parse(tokenCryptoService.sign(claimsSet));
+        // then
+        assertTrue(signedJWT.verify(new MACVerifier(SIGNER_KEY.getBytes())));
+        assertEquals("Test", signedJWT.getJWTClaimsSet().getSubject());
+    }
+
+    @Test
+    void verify_tokenSignedByNimbus_success() throws Exception {
+        // given
+        SignedJWT signedJWT = new SignedJWT(new JWSHeader(JWSAlgorithm.HS512), claimsSet);
+        signedJWT.sign(new MACSigner(SIGNER_KEY));
+        // when then
+        assertTrue(tokenCryptoService.verify(SignedJWT.parse(signedJWT.serialize())));
+    }
+
+    @Test
+    void verify_tamperedPayload_fail() throws Exception {
+        // given
+        String[] parts = tokenCryptoService.sign(claimsSet).split("\\.");
+        String[] admin = tokenCryptoService
+                .sign(new JWTClaimsSet.Builder(claimsSet).subject("Admin").build())
+                .split("\\.");
+        String tampered = parts[0] + "." + admin[1] + "." + parts[2];
+        String forged = new TokenCryptoService(SIGNER_KEY.toLowerCase()).sign(claimsSet);
+        // when then
+        assertFalse(tokenCryptoService.verify(SignedJWT.parse(forged)));
+        assertFalse(tokenCryptoService.verify(SignedJWT.parse(tampered)));
+    }
+
+    @Test
+    void init_shortKey_fail() {
+        assertThrows(IllegalStateException.class, () -> new TokenCryptoService("too-short"));
+    }
+
+    @Test
+    void sign_rs256_verifiableWithPublishedKey() throws Exception {
+        // given
+        tokenCryptoService = new TokenCryptoService(SIGNER_KEY, "RS256", "", false);
+        // when
+        SignedJWT signedJWT = SignedJWT.parse(tokenCryptoService.sign(claimsSet));
+        RSAKey published = (RSAKey) JWKSet.parse(tokenCryptoService.getJwkSet().json())
+                .getKeyByKeyId(signedJWT.getHeader().getKeyID());
+        // then
+        assertFalse(published.isPrivate());
+        assertTrue(signedJWT.verify(new RSASSAVerifier(published)));
+        assertTrue(tokenCryptoService.verify(signedJWT));
+    }
+
+    @Test
+    void verify_rotatedKeySet_acceptsOldKidAndSignsWithNew(@TempDir Path dir) throws Exception {
+        // given
+        RSAKey oldKey = new RSAKeyGenerator(2048).keyID("old").keyUse(KeyUse.SIGNATURE).generate();
+        RSAKey newKey = new RSAKeyGenerator(2048).keyID("new").keyUse(KeyUse.SIGNATURE).generate();
+        Path before = Files.writeString(dir.resolve("before.json"), new JWKSet(oldKey).toString(false));
+        Path after = Files.writeString(dir.resolve("after.json"), new JWKSet(List.of(newKey, oldKey)).toString(false));
+        String oldToken = new TokenCryptoService("", "RS256", before.toUri().toString(), false).sign(claimsSet);
+        // when
+        tokenCryptoService = new TokenCryptoService("", "RS256", after.toUri().toString(), false);
+        SignedJWT newToken = SignedJWT.parse(tokenCryptoService.sign(claimsSet));
+        // then
+        assertEquals("new", newToken.getHeader().getKeyID());
+        assertTrue(tokenCryptoService.verify(SignedJWT.parse(oldToken)));
+        assertTrue(tokenCryptoService.verify(newToken));
+        // HS512 is off unless accept-hs512 is set, so a token signed with the old shared key is refused
+        assertFalse(tokenCryptoService.verify(SignedJWT.parse(new TokenCryptoService(SIGNER_KEY).sign(claimsSet))));
+    }
+
+    @Test
+    void verify_edDsaToken_success() throws Exception {
+        // given
+        tokenCryptoService = new TokenCryptoService("", "EdDSA", "", false);
+        String token = tokenCryptoService.sign(claimsSet);
+        String admin = tokenCryptoService.sign(new JWTClaimsSet.Builder(claimsSet).subject("Admin").build());
+        String tampered = token.substring(0, token.lastIndexOf('.')) + admin.substring(admin.lastIndexOf('.'));
+        // when then
+        assertTrue(tokenCryptoService.verify(SignedJWT.parse(token)));
+        assertFalse(tokenCryptoService.verify(SignedJWT.parse(tampered)));
+        // a key generated by another process shares no kid with this one
+        assertFalse(new TokenCryptoService("", "EdDSA", "", false).verify(SignedJWT.parse(token)));
+    }
+
+    @Test
+    void verify_hs512InRs256Mode_onlyWhenAccepted() throws Exception {
+        // given
+        SignedJWT hs512Token = SignedJWT.parse(new TokenCryptoService(SIGNER_KEY).sign(claimsSet));
+        // when
+        var refusing = new TokenCryptoService(SIGNER_KEY, "RS256", "", false);
+        var accepting = new TokenCryptoService(SIGNER_KEY, "RS256", "", true);
+        // then
+        assertFalse(refusing.verify(hs512Token));
+        assertTrue(accepting.verify(hs512Token));
+        assertThrows(IllegalStateException.class, () -> new TokenCryptoService("", "RS256", "", true));
+    }
+}
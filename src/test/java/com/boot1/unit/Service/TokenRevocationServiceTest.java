@@ -0,0 +1,104 @@
+package com.boot1.unit.Service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.boot1.repository.InvalidatedTokenRepository;
+import com.boot1.service.RevocationQueue;
+import com.boot1.service.TokenRevocationService;
+import com.boot1.service.VerifiedTokenCache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class TokenRevocationServiceTest {
+    InvalidatedTokenRepository invalidatedTokenRepository;
+    RevocationQueue revocationQueue;
+    TokenRevocationService tokenRevocationService;
+
+    @BeforeEach
+    void initData() {
+        invalidatedTokenRepository = mock(InvalidatedTokenRepository.class);
+        revocationQueue = mock(RevocationQueue.class);
+        tokenRevocationService = newService(60_000);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void findRevoked_mixedBatch_oneQueryForTokensNotQueued() {
+        // given
+        when(revocationQueue.contains("queued")).thenReturn(true);
+        when(invalidatedTokenRepository.findIdsIn(any())).thenReturn(List.of("stored"));
+        // when
+        Set<String> revoked = tokenRevocationService.findRevoked(List.of("queued", "stored", "valid", "stored"));
+        // then
+        assertEquals(Set.of("queued", "stored"), revoked);
+        ArgumentCaptor<Collection<String>> ids = ArgumentCaptor.forClass(Collection.class);
+        verify(invalidatedTokenRepository, times(1)).findIdsIn(ids.capture());
+        assertEquals(List.of("stored", "valid"), List.copyOf(ids.getValue()));
+    }
+
+    @Test
+    void findRevoked_allQueued_noQuery() {
+        // given
+        when(revocationQueue.contains(any())).thenReturn(true);
+        // when
+        Set<String> revoked = tokenRevocationService.findRevoked(List.of("a", "b"));
+        // then
+        assertEquals(Set.of("a", "b"), revoked);
+        verifyNoInteractions(invalidatedTokenRepository);
+    }
+
+    @Test
+    void isRevoked_revokedOnAnotherInstance_seenAfterRefresh() {
+        // given
+        when(invalidatedTokenRepository.streamAllIds()).thenReturn(Stream.empty());
+        tokenRevocationService.rebuild();
+        when(invalidatedTokenRepository.findLatestRevokedAt()).thenReturn(new Date());
+        when(invalidatedTokenRepository.streamIdsRevokedSince(any())).thenReturn(Stream.of("elsewhere"));
+        when(invalidatedTokenRepository.existsById("elsewhere")).thenReturn(true);
+        assertFalse(tokenRevocationService.isRevoked("elsewhere"));
+        // when
+        tokenRevocationService.refresh();
+        // then
+        assertTrue(tokenRevocationService.isRevoked("elsewhere"));
+    }
+
+    @Test
+    void isRevoked_filterBehindMaxLag_asksTheTable() throws Exception {
+        // given
+        tokenRevocationService = newService(0);
+        when(invalidatedTokenRepository.streamAllIds()).thenReturn(Stream.empty());
+        tokenRevocationService.rebuild();
+        when(invalidatedTokenRepository.existsById("elsewhere")).thenReturn(true);
+        Thread.sleep(1);
+        // when
+        boolean revoked = tokenRevocationService.isRevoked("elsewhere");
+        // then
+        assertTrue(revoked);
+    }
+
+    private TokenRevocationService newService(long maxLagMillis) {
+        return new TokenRevocationService(
+                invalidatedTokenRepository,
+                mock(VerifiedTokenCache.class),
+                revocationQueue,
+                mock(PlatformTransactionManager.class),
+                new SimpleMeterRegistry(),
+                1000,
+                0.01,
+                5000,
+                maxLagMillis);
+    }
+}
@@ -0,0 +1,139 @@
+package com.boot1.unit.Service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+
+import jakarta.validation.Validation;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import com.boot1.Entities.Role;
+import com.boot1.dto.response.UserImportError;
+import com.boot1.dto.response.UserImportResponse;
+import com.boot1.exception.ErrorCode;
+import com.boot1.repository.RoleRepository;
+import com.boot1.repository.UserRepository;
+import com.boot1.service.UserImportService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class UserImportServiceTest {
+    JdbcTemplate jdbcTemplate;
+    UserRepository userRepository;
+    UserImportService userImportService;
+
+    @BeforeEach
+    void initData() {
+        var dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + System.nanoTime() + ";MODE=MYSQL;NON_KEYWORDS=USER;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table `user` (id varchar(255) primary key, username varchar(255) unique,"
+                + " password varchar(255), first_name varchar(255), last_name varchar(255), dob date,"
+                + " email varchar(255))");
+        jdbcTemplate.execute("create table user_roles (user_id varchar(255), role_name varchar(255))");
+        userRepository = mock(UserRepository.class);
+        RoleRepository roleRepository = mock(RoleRepository.class);
+        when(roleRepository.findByName("USER"))
+                .thenReturn(Optional.of(Role.builder().name("USER").build()));
+        PasswordEncoder passwordEncoder = mock(PasswordEncoder.class);
+        when(passwordEncoder.encode(any())).thenAnswer(invocation -> "hash:" + invocation.getArgument(0));
+        userImportService = new UserImportService(
+                userRepository,
+                roleRepository,
+                jdbcTemplate,
+                new DataSourceTransactionManager(dataSource),
+                passwordEncoder,
+                Validation.buildDefaultValidatorFactory().getValidator(),
+                new ObjectMapper().registerModule(new JavaTimeModule()),
+                new SimpleMeterRegistry(),
+                3,
+                100,
+                2);
+    }
+
+    @Test
+    void importCsv_badRows_reportedAndTheRestInserted() {
+        // given
+        when(userRepository.findUsernamesIn(any())).thenReturn(List.of("Bob"));
+        String csv = """
+                username,password,first_name,lastName,dob,email
+                Alice,Secret1,Alice,Smith,2000-01-01,user@gmail.com
+                Bob,Secret1,Bob,Jones,2000-01-01,user@gmail.com
+                ALICE,Secret1,Alice,Again,2000-01-01,user@gmail.com
+                Carol,Secret1,Carol,White,2000-01-01,carol@yahoo.com
+                Dave,Secret1,Dave,"O""Neil, Jr",2000-01-01,user@gmail.com
+                Eve,Secret1,Eve,Black,yesterday,user@gmail.com
+                """;
+        // when
+        UserImportResponse response =
+                userImportService.importCsv(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+        // then
+        assertEquals(6, response.getReceived());
+        assertEquals(2, response.getCreated());
+        assertEquals(4, response.getFailed());
+        assertEquals(
+                List.of(2L, 3L, 4L, 6L), response.getErrors().stream().map(UserImportError::getRow).toList());
+        assertEquals(
+                List.of(
+                        ErrorCode.USERNAME_EXISTS.getCode(),
+                        ErrorCode.USERNAME_EXISTS.getCode(),
+                        ErrorCode.INVALID_EMAIL_TYPE.getCode(),
+                        ErrorCode.INVALID_IMPORT_ROW.getCode()),
+                response.getErrors().stream().map(UserImportError::getCode).toList());
+        assertEquals(
+                "O\"Neil, Jr",
+                jdbcTemplate.queryForObject("select last_name from `user` where username = 'Dave'", String.class));
+        assertEquals(
+                "hash:Secret1",
+                jdbcTemplate.queryForObject("select password from `user` where username = 'Alice'", String.class));
+        assertEquals(2, jdbcTemplate.queryForObject("select count(*) from user_roles", Integer.class));
+    }
+
+    @Test
+    void importJson_truncatedInput_keepsRowsReadBeforeIt() {
+        // given
+        String json = """
+                [{"username":"Alice","password":"Secret1","firstName":"A","lastName":"S","email":"user@gmail.com"},
+                 {"username":"Bob","password":"Secret1","firstName":"B","lastName":"J","email":"user@gmail.com"},
+                 {"username":"Carol","pass
+                """;
+        // when
+        UserImportResponse response =
+                userImportService.importJson(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+        // then
+        assertEquals(2, response.getCreated());
+        assertEquals(1, response.getFailed());
+        assertEquals(3, response.getErrors().getFirst().getRow());
+        assertEquals(ErrorCode.INVALID_IMPORT_FILE.getCode(), response.getErrors().getFirst().getCode());
+    }
+
+    @Test
+    void importJson_nameTakenAfterLookup_onlyThatRowRejected() {
+        // given
+        jdbcTemplate.update("insert into `user` (id, username) values ('1', 'Bob')");
+        String json = """
+                [{"username":"Alice","password":"Secret1","firstName":"A","lastName":"S","email":"user@gmail.com"},
+                 {"username":"Bob","password":"Secret1","firstName":"B","lastName":"J","email":"user@gmail.com"}]
+                """;
+        // when
+        UserImportResponse response =
+                userImportService.importJson(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+        // then
+        assertEquals(1, response.getCreated());
+        assertEquals(ErrorCode.USER_EXISTS.getCode(), response.getErrors().getFirst().getCode());
+        assertEquals(1, jdbcTemplate.queryForObject("select count(*) from user_roles", Integer.class));
+    }
+}
@@ -18,7 +18,6 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.context.TestPropertySource;
 
 import com.boot1.Entities.Role;
@@ -31,6 +30,8 @@ import com.boot1.exception.ApiException;
 import com.boot1.mapper.UserMapper;
 import com.boot1.repository.RoleRepository;
 import com.boot1.repository.UserRepository;
+import com.boot1.service.PasswordHashingService;
+import com.boot1.service.TokenEpochService;
 import com.boot1.service.UserService;
 
 @ExtendWith(MockitoExtension.class)
@@ -46,11 +47,14 @@ public class UserServiceTest {
     UserRepository userRepository;
 
     @Mock
-    PasswordEncoder passwordEncoder;
+    PasswordHashingService passwordHashingService;
 
     @Mock
     RoleRepository roleRepository;
 
+    @Mock
+    TokenEpochService tokenEpochService;
+
     LocalDate dob;
     UserCreationRequest userCreationRequest;
     UserResponse userResponse;
@@ -77,7 +81,7 @@ public class UserServiceTest {
                 .dob(dob)
                 .firstName("test")
                 .lastName("test")
-                .roles(Set.of(adminRole))
+                .roles(Set.of(RoleName.ADMIN.name()))
                 .id("sontaypham")
                 .build();
         user = User.builder()
@@ -105,7 +109,7 @@ public class UserServiceTest {
         // given
         when(userRepository.existsByUsername(anyString())).thenReturn(false);
         when(userMapper.toUser(userCreationRequest)).thenReturn(user);
-        when(passwordEncoder.encode(anyString())).thenReturn("Testtest");
+        when(passwordHashingService.encode(anyString())).thenReturn("Testtest");
         when(roleRepository.findByName("USER")).thenReturn(Optional.of(userRole));
         when(userRepository.save(user)).thenReturn(user);
         when(userMapper.toUserResponse(user)).thenReturn(userResponse);
@@ -177,7 +181,7 @@ public class UserServiceTest {
                 .when(userMapper)
                 .updateUser(any(User.class), any(UserUpdateRequest.class));
 
-        when(passwordEncoder.encode("newPassword")).thenReturn("encodedPass");
+        when(passwordHashingService.encode("newPassword")).thenReturn("encodedPass");
 
         when(roleRepository.findByNameIn(Set.of("ADMIN"))).thenReturn(Set.of(adminRole));
 
@@ -198,9 +202,10 @@ public class UserServiceTest {
 
         assertEquals("encodedPass", saved.getPassword());
         assertTrue(saved.getRoles().contains(adminRole));
+        verify(tokenEpochService).bump(saved.getUsername());
 
         assertEquals("sontaypham", updated.getId());
-        assertTrue(updated.getRoles().stream().anyMatch(r -> r.getName().equals("ADMIN")));
+        assertTrue(updated.getRoles().contains("ADMIN"));
     }
 
     @Test
@@ -223,7 +228,7 @@ public class UserServiceTest {
         UserResponse updated = userService.updateUser("sontaypham", userUpdateRequest);
 
         // then
-        verify(passwordEncoder, never()).encode(anyString());
+        verify(passwordHashingService, never()).encode(anyString());
         verify(userRepository).save(any(User.class));
         assertEquals("sontaypham", updated.getId());
     }
@@ -248,7 +253,7 @@ public class UserServiceTest {
         UserResponse updated = userService.updateUser("sontaypham", userUpdateRequest);
 
         // then
-        verify(passwordEncoder, never()).encode(anyString());
+        verify(passwordHashingService, never()).encode(anyString());
         verify(userRepository).save(any(User.class));
         assertEquals("sontaypham", updated.getId());
     }